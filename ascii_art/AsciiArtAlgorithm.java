@@ -1,9 +1,18 @@
 package ascii_art;
 
+import ascii_output.AsciiRowSink;
 import image.Image;
+import image.LuminanceProfile;
+import image_char_matching.MatcherSnapshot;
 import image_char_matching.SubImgCharMatcher;
-import java.awt.*;
+import java.io.IOException;
+import java.io.Serial;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static ascii_art.Constants.*;
 
@@ -12,12 +21,52 @@ import static ascii_art.Constants.*;
  * Class that implements an algorithm to generate ASCII art from an image.
  * The algorithm processes an image, divides it into sub-images, calculates the brightness of each sub-image,
  * and maps the brightness values to characters using a specified character matcher.
+ * <p>
+ * With a parallelism level above one, large grids are split into row bands that are
+ * rendered on a fork/join pool. Every tile is computed exactly as in the sequential
+ * path, so the output is identical. Algorithms with the same level share one pool,
+ * whose idle workers end on their own, so no algorithm has a pool to shut down.
+ * The level and the threshold default to the {@code ascii_art.parallelism} and
+ * {@code ascii_art.parallelThreshold} system properties.
+ * <p>
+ * Sub-image brightness depends only on the image and the resolution, so the brightness
+ * grid of the most recently used resolutions is cached. Charset or rounding changes then
+ * only redo the character lookup. The image must not change after the algorithm is created.
+ * <p>
+ * Cached levels keep exact luminance sums, so they form a pyramid: a level whose finer
+ * neighbour (half the sub-image size) is cached is built by adding up 2x2 blocks of it,
+ * which gives exactly the values a scan of the image would give.
+ * <p>
+ * Color output needs the mean color of every sub-image as well. It is computed in the
+ * same pass as the brightness: each sub-image's channels are summed once and its
+ * luminance is derived from those sums, so color costs no second scan of the pixels.
+ * <p>
+ * Every render matches all its sub-images against a single snapshot of the matcher,
+ * so editing the matcher on another thread never mixes two charsets in one result.
+ * <p>
+ * In shape matching mode every sub-image is thresholded into a bit mask and matched
+ * to the glyph it differs from in the fewest cells, instead of by brightness alone.
  */
 public class AsciiArtAlgorithm {
     private final Image image;
     private int resolution;
     private final SubImgCharMatcher matcher;
     private HashSet<Character> charSet;
+    /**
+     * The fork/join pools shared by all algorithms, by parallelism level.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private int parallelism = Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM));
+    private int parallelThreshold = Integer.getInteger(PARALLEL_THRESHOLD_PROPERTY, DEFAULT_PARALLEL_THRESHOLD);
+    private boolean shapeMatching = false;
+    private final Map<Integer, BrightnessLevel> brightnessCache =
+            new LinkedHashMap<>(BRIGHTNESS_CACHE_SIZE, DEFAULT_LOAD_FACTOR, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, BrightnessLevel> eldest) {
+                    return size() > BRIGHTNESS_CACHE_SIZE;
+                }
+            };
 
     /**
      * Constructor for AsciiArtAlgorithm.
@@ -39,41 +88,385 @@ public class AsciiArtAlgorithm {
      * @return 2D array representing ASCII art.
      */
     public char[][] run() {
-        int subImageSize = image.getHeight() / resolution;
-        Color[][][] subImages = image.divideIntoSubImages(subImageSize);
+        if (shapeMatching) {
+            return toShapeArt(image.getHeight() / resolution, matcher.snapshot());
+        }
+        return toAsciiArt(getBrightnessGrid());
+    }
 
+    /**
+     * Executes the ASCII art algorithm, streaming every row to the sink as soon as it
+     * is matched. Only one row of characters exists at a time. The sink is not closed.
+     * @param sink receives the rows in order.
+     * @throws IOException if the sink fails.
+     */
+    public void run(AsciiRowSink sink) throws IOException {
+        run(sink, false);
+    }
+
+    /**
+     * Executes the ASCII art algorithm, streaming every row to the sink as soon as it
+     * is matched, optionally together with the mean color of every character's sub-image.
+     * The sink is not closed.
+     * @param sink receives the rows in order.
+     * @param withColor whether to pass the colors of every row to the sink.
+     * @throws IOException if the sink fails.
+     */
+    public void run(AsciiRowSink sink, boolean withColor) throws IOException {
+        int subImageSize = image.getHeight() / resolution;
         int numRows = image.getHeight() / subImageSize;
         int numCols = image.getWidth() / subImageSize;
-        char[][] asciiArt = new char[numRows][numCols];
+        // Shape matching needs no brightness, only the colors when they are shown
+        BrightnessLevel level = shapeMatching && !withColor ? null : getLevel(subImageSize, withColor);
+        double[][] brightnessGrid = level == null ? null : level.brightness;
+        MatcherSnapshot snapshot = matcher.snapshot();
+        char[] row = new char[numCols];
+        long[] mask = shapeMatching ? new long[MASK_WORDS] : null;
 
+        sink.begin(numRows, numCols);
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.MATCHING);
         for (int i = 0; i < numRows; i++) {
-            for (int j = 0; j < numCols; j++) {
-                double brightness = calculateSubImageBrightness(subImages[i * numCols + j]);
-                asciiArt[i][j] = matcher.getCharByImageBrightness(brightness);
+            if (shapeMatching) {
+                image.forEachSubImage(subImageSize, i, i + 1, (gridRow, col, top, left, size) -> {
+                    image.getShapeMask(top, left, size, mask);
+                    row[col] = snapshot.getCharByShape(mask);
+                });
+            } else {
+                double[] brightnessRow = brightnessGrid[i];
+                for (int j = 0; j < numCols; j++) {
+                    row[j] = snapshot.getCharByImageBrightness(brightnessRow[j]);
+                }
+            }
+            if (withColor) {
+                sink.row(i, row, level.colors[i]);
+            } else {
+                sink.row(i, row);
             }
         }
+        RenderStats.end(probe);
+    }
+
+    /**
+     * Executes the ASCII art algorithm at the current resolution and every coarser one,
+     * halving the resolution each time. Every coarser level is derived from the previous
+     * one, so the pixels are only read for the finest level. Levels are always matched
+     * by brightness.
+     * @return the ASCII art of every level, keyed by resolution, finest first.
+     */
+    public Map<Integer, char[][]> runAllLevels() {
+        Map<Integer, char[][]> levels = new LinkedHashMap<>();
+        for (int levelResolution = resolution; levelResolution >= 1; levelResolution /= RES_MULTI) {
+            levels.put(levelResolution,
+                    toAsciiArt(getLevel(image.getHeight() / levelResolution, false).brightness));
+        }
+        return levels;
+    }
+
+    private char[][] toAsciiArt(double[][] brightnessGrid) {
+        int numRows = brightnessGrid.length;
+        int numCols = brightnessGrid[FIRST].length;
+        char[][] asciiArt = new char[numRows][numCols];
+        MatcherSnapshot snapshot = matcher.snapshot();
+
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.MATCHING);
+        forEachRowBand(numRows, numCols, (firstRow, endRow) -> {
+            for (int row = firstRow; row < endRow; row++) {
+                for (int col = 0; col < numCols; col++) {
+                    asciiArt[row][col] = snapshot.getCharByImageBrightness(brightnessGrid[row][col]);
+                }
+            }
+        });
+        RenderStats.end(probe);
+        return asciiArt;
+    }
+
+    /**
+     * Matches every sub-image by shape, thresholding it into a mask and picking the
+     * glyph at the smallest Hamming distance.
+     */
+    private char[][] toShapeArt(int subImageSize, MatcherSnapshot snapshot) {
+        int numRows = image.getHeight() / subImageSize;
+        int numCols = image.getWidth() / subImageSize;
+        char[][] asciiArt = new char[numRows][numCols];
+
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.MATCHING);
+        forEachRowBand(numRows, numCols, (firstRow, endRow) -> {
+            long[] mask = new long[MASK_WORDS];
+            image.forEachSubImage(subImageSize, firstRow, endRow, (row, col, top, left, size) -> {
+                image.getShapeMask(top, left, size, mask);
+                asciiArt[row][col] = snapshot.getCharByShape(mask);
+            });
+        });
+        RenderStats.end(probe);
         return asciiArt;
     }
 
+    /**
+     * Returns the brightness of every sub-image at the current resolution,
+     * computing it only if it is not cached.
+     * @return the brightness grid, indexed by row and column.
+     */
+    public double[][] getBrightnessGrid() {
+        return getLevel(image.getHeight() / resolution, false).brightness;
+    }
 
     /**
-     * calculate Sub Image Brightness
-     * @param subImage
-     * @return sub image brightness
+     * Returns the mean packed RGB color of every sub-image at the current resolution,
+     * computing it, together with the brightness, only if it is not cached.
+     * @return the color grid, indexed by row and column.
      */
-    private double calculateSubImageBrightness(Color[][] subImage) {
-        double totalBrightness = 0;
-        int totalPixels = subImage.length * subImage[FIRST].length;
+    public int[][] getColorGrid() {
+        return getLevel(image.getHeight() / resolution, true).colors;
+    }
 
-        for (Color[] row : subImage) {
-            for (Color pixel : row) {
-                double gray = pixel.getRed() * RED_CONSTANT + pixel.getGreen() *
-                        GREEN_CONSTANT + pixel.getBlue() * BLUE_CONSTANT;
-                totalBrightness += gray / RGB_CONSTANT;
+    /**
+     * Returns the cached level of a sub-image size, deriving it from the finer
+     * level when that one is cached and reading the image otherwise.
+     * A level cached without colors is recomputed when colors are needed.
+     */
+    private BrightnessLevel getLevel(int subImageSize, boolean withColor) {
+        BrightnessLevel level = brightnessCache.get(subImageSize);
+        if (level != null && (!withColor || level.hasColor())) {
+            return level;
+        }
+        int numRows = image.getHeight() / subImageSize;
+        int numCols = image.getWidth() / subImageSize;
+        BrightnessLevel finer = subImageSize % RES_MULTI == 0
+                ? brightnessCache.get(subImageSize / RES_MULTI) : null;
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.BRIGHTNESS);
+        if (finer != null && finer.sums.length == numRows * RES_MULTI
+                && finer.sums[FIRST].length == numCols * RES_MULTI
+                && (!withColor || finer.hasColor())) {
+            level = coarsenLevel(finer, subImageSize, numRows, numCols);
+        } else if (withColor) {
+            level = computeColorLevel(subImageSize, numRows, numCols);
+        } else {
+            level = computeLevel(subImageSize, numRows, numCols);
+        }
+        RenderStats.end(probe);
+        brightnessCache.put(subImageSize, level);
+        return level;
+    }
+
+    private BrightnessLevel computeLevel(int subImageSize, int numRows, int numCols) {
+        BrightnessLevel level = new BrightnessLevel(numRows, numCols, false);
+
+        forEachRowBand(numRows, numCols, (firstRow, endRow) ->
+                image.forEachSubImage(subImageSize, firstRow, endRow, (row, col, top, left, size) ->
+                        level.set(row, col, calculateSubImageLuminance(top, left, size), size)));
+        return level;
+    }
+
+    /**
+     * Builds a level with colors in one fused pass: the channels of every sub-image
+     * are summed once and its luminance is derived from the sums.
+     */
+    private BrightnessLevel computeColorLevel(int subImageSize, int numRows, int numCols) {
+        BrightnessLevel level = new BrightnessLevel(numRows, numCols, true);
+        LuminanceProfile profile = image.getLuminanceProfile();
+
+        forEachRowBand(numRows, numCols, (firstRow, endRow) -> {
+            long[] channels = new long[RGB_CHANNELS];
+            image.forEachSubImage(subImageSize, firstRow, endRow, (row, col, top, left, size) -> {
+                image.getChannelSums(top, left, size, channels);
+                // A linearized profile cannot be derived from the channel sums
+                long luminance = profile.isWeightedSum()
+                        ? profile.luminanceOf(channels[FIRST], channels[SECOND], channels[THIRD])
+                        : calculateSubImageLuminance(top, left, size);
+                level.set(row, col, luminance, size);
+                level.setColor(row, col, channels[FIRST], channels[SECOND], channels[THIRD], size);
+            });
+        });
+        return level;
+    }
+
+    /**
+     * Builds a level by adding up 2x2 blocks of the finer level, in O(tiles).
+     * Colors are coarsened too when the finer level has them.
+     */
+    private BrightnessLevel coarsenLevel(BrightnessLevel finer, int subImageSize,
+                                         int numRows, int numCols) {
+        BrightnessLevel level = new BrightnessLevel(numRows, numCols, finer.hasColor());
+        long[][] fine = finer.sums;
+        long[][] fineChannels = finer.channelSums;
+
+        forEachRowBand(numRows, numCols, (firstRow, endRow) -> {
+            for (int row = firstRow; row < endRow; row++) {
+                long[] upper = fine[row * RES_MULTI];
+                long[] lower = fine[row * RES_MULTI + 1];
+                for (int col = 0; col < numCols; col++) {
+                    int fineCol = col * RES_MULTI;
+                    level.set(row, col, upper[fineCol] + upper[fineCol + 1]
+                            + lower[fineCol] + lower[fineCol + 1], subImageSize);
+                }
+                if (fineChannels != null) {
+                    long[] upperChannels = fineChannels[row * RES_MULTI];
+                    long[] lowerChannels = fineChannels[row * RES_MULTI + 1];
+                    for (int col = 0; col < numCols; col++) {
+                        int left = col * RES_MULTI * RGB_CHANNELS;
+                        int right = left + RGB_CHANNELS;
+                        level.setColor(row, col,
+                                upperChannels[left] + upperChannels[right]
+                                        + lowerChannels[left] + lowerChannels[right],
+                                upperChannels[left + 1] + upperChannels[right + 1]
+                                        + lowerChannels[left + 1] + lowerChannels[right + 1],
+                                upperChannels[left + 2] + upperChannels[right + 2]
+                                        + lowerChannels[left + 2] + lowerChannels[right + 2],
+                                subImageSize);
+                    }
+                }
             }
+        });
+        return level;
+    }
+
+    /**
+     * Exact luminance sums of one grid of sub-images, with the matching brightness values,
+     * and optionally the exact channel sums with the matching mean colors.
+     */
+    private static final class BrightnessLevel {
+        private final long[][] sums;
+        private final double[][] brightness;
+        private final long[][] channelSums;
+        private final int[][] colors;
+
+        BrightnessLevel(int numRows, int numCols, boolean withColor) {
+            sums = new long[numRows][numCols];
+            brightness = new double[numRows][numCols];
+            channelSums = withColor ? new long[numRows][numCols * RGB_CHANNELS] : null;
+            colors = withColor ? new int[numRows][numCols] : null;
+        }
+
+        boolean hasColor() {
+            return colors != null;
+        }
+
+        void set(int row, int col, long sum, int subImageSize) {
+            sums[row][col] = sum;
+            brightness[row][col] = Image.toBrightness(sum, subImageSize);
         }
 
-        return totalBrightness / totalPixels;
+        void setColor(int row, int col, long red, long green, long blue, int subImageSize) {
+            int index = col * RGB_CHANNELS;
+            channelSums[row][index] = red;
+            channelSums[row][index + 1] = green;
+            channelSums[row][index + 2] = blue;
+            colors[row][col] = Image.toMeanRGB(red, green, blue, subImageSize);
+        }
+    }
+
+    /**
+     * Runs the given work over all grid rows, either on the calling thread
+     * or split into row bands on the fork/join pool.
+     */
+    private void forEachRowBand(int numRows, int numCols, RowRangeWork work) {
+        if (parallelism > 1 && numRows > 1 && numRows * numCols >= parallelThreshold) {
+            int bandRows = Math.max(1, numRows / (parallelism * BANDS_PER_THREAD));
+            getPool().invoke(new RowBandTask(work, FIRST, numRows, bandRows));
+        } else {
+            work.run(FIRST, numRows);
+        }
+    }
+
+    /**
+     * Work applied to a range of grid rows.
+     */
+    @FunctionalInterface
+    private interface RowRangeWork {
+        void run(int firstRow, int endRow);
+    }
+
+    /**
+     * Fork/join task splitting a range of grid rows in half until it is at most one band.
+     */
+    private static class RowBandTask extends RecursiveAction {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient RowRangeWork work;
+        private final int firstRow;
+        private final int endRow;
+        private final int bandRows;
+
+        RowBandTask(RowRangeWork work, int firstRow, int endRow, int bandRows) {
+            this.work = work;
+            this.firstRow = firstRow;
+            this.endRow = endRow;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if (endRow - firstRow <= bandRows) {
+                work.run(firstRow, endRow);
+                return;
+            }
+            int middle = (firstRow + endRow) >>> 1;
+            invokeAll(new RowBandTask(work, firstRow, middle, bandRows),
+                    new RowBandTask(work, middle, endRow, bandRows));
+        }
+    }
+
+    private ForkJoinPool getPool() {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Sets the number of threads used to render a grid.
+     * A level of one keeps rendering on the calling thread.
+     *
+     * @param parallelism the number of worker threads, at least one.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(PARALLELISM_INCORRECT_FORMAT);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Chooses between matching sub-images by brightness, the default, and by shape.
+     *
+     * @param shapeMatching whether to match sub-images by shape.
+     */
+    public void setShapeMatching(boolean shapeMatching) {
+        this.shapeMatching = shapeMatching;
+    }
+
+    /**
+     * Sets the profile weighing pixel channels into brightness, and drops the
+     * cached brightness levels computed with the previous one.
+     *
+     * @param profile the luminance profile.
+     */
+    public void setLuminanceProfile(LuminanceProfile profile) {
+        if (profile != image.getLuminanceProfile()) {
+            image.setLuminanceProfile(profile);
+            brightnessCache.clear();
+        }
+    }
+
+    /**
+     * Sets the minimal number of tiles for which parallel rendering is used.
+     * Smaller grids are rendered sequentially since forking would cost more than it saves.
+     *
+     * @param parallelThreshold the minimal tile count.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+
+    /**
+     * calculate Sub Image Luminance using the image's luminance summed-area table,
+     * so the cost per sub image does not depend on its size
+     * @param top first row of the sub image
+     * @param left first column of the sub image
+     * @param subImageSize side length of the sub image
+     * @return exact scaled luminance sum of the sub image
+     */
+    private long calculateSubImageLuminance(int top, int left, int subImageSize) {
+        return image.getLuminanceSum(top, left, subImageSize);
     }
 
 
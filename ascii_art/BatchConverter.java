@@ -0,0 +1,321 @@
+package ascii_art;
+
+import ascii_output.CompactHtmlOutput;
+import ascii_output.HtmlRowSink;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * Headless entry point converting many images without user interaction.
+ * Images are converted concurrently on a bounded worker pool, all sharing one
+ * character matcher, and a throughput summary is printed at the end.
+ * <p>
+ * Usage: {@code BatchConverter <directory or glob> <resolution> <charset> <round> <output>
+ * [threads [output directory [cache directory]]]}
+ * where the charset is {@code all}, a range such as {@code a-z} or a literal list of
+ * characters, the round mode is {@code up}, {@code down} or {@code abs} and the output
+ * is {@code console} (a .txt file per image), {@code html} (an .html file per image) or
+ * {@code compact} (an .html file per image, without the spaces ending each row).
+ * <p>
+ * Every output is named after the whole input file name, so {@code a.png} and
+ * {@code a.jpg} give {@code a.png.txt} and {@code a.jpg.txt}, and is written to the
+ * output directory, the current one by default. Inputs that would still share an output
+ * file are rejected before anything is converted.
+ * <p>
+ * With a cache directory, finished renders are kept in a {@link RenderCache} keyed by
+ * the image file's content and the settings, so an image converted before, in this run
+ * or an earlier one, is copied out of the cache without being decoded or matched. Copied
+ * images are counted apart and left out of the throughput.
+ */
+public class BatchConverter {
+
+    private final int resolution;
+    private final SubImgCharMatcher matcher;
+    private final String outputMethod;
+    private final int threads;
+    private final Path outputDirectory;
+    private final RenderCache cache;
+    private final AtomicLong convertedImages = new AtomicLong();
+    private final AtomicLong convertedPixels = new AtomicLong();
+    private final AtomicLong cachedImages = new AtomicLong();
+
+    /**
+     * Constructs a BatchConverter.
+     *
+     * @param resolution   the resolution for ASCII art.
+     * @param matcher      the matcher shared by every conversion; it must not be modified while running.
+     * @param outputMethod the output method, console or html.
+     * @param threads         the number of worker threads.
+     * @param outputDirectory the existing directory the outputs are written to.
+     * @param cache           the cache of finished renders, or null to render every image.
+     */
+    public BatchConverter(int resolution, SubImgCharMatcher matcher, String outputMethod, int threads,
+                          Path outputDirectory, RenderCache cache) {
+        this.resolution = resolution;
+        this.matcher = matcher;
+        this.outputMethod = outputMethod;
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.cache = cache;
+    }
+
+    /**
+     * Converts every given image and prints a throughput summary.
+     * A failing image is reported and does not stop the others.
+     *
+     * @param inputs the images to convert.
+     * @throws IllegalArgumentException if two inputs would be written to the same output file.
+     * @throws InterruptedException     if interrupted while waiting for the workers.
+     */
+    public void run(List<Path> inputs) throws InterruptedException {
+        Set<Path> outputs = new HashSet<>();
+        for (Path input : inputs) {
+            Path output = outputFile(input);
+            if (!outputs.add(output)) {
+                throw new IllegalArgumentException(BATCH_OUTPUT_COLLISION + output);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Path input : inputs) {
+                results.add(pool.submit(() -> {
+                    convert(input);
+                    return null;
+                }));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+                    System.out.println(inputs.get(i) + ": " + message);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        printSummary(System.nanoTime() - start);
+        if (cache != null) {
+            System.out.println(String.format(Locale.ROOT, BATCH_CACHED_SUMMARY, cachedImages.get()));
+            System.out.println(cache.getSummary());
+        }
+    }
+
+    /**
+     * Returns the output file of an input: its whole file name, with the extension of
+     * the output method appended, in the output directory.
+     */
+    private Path outputFile(Path input) {
+        String extension = outputMethod.equals(CONSOLE_OUTPUT) ? TEXT_EXTENSION : HTML_EXTENSION;
+        return outputDirectory.resolve(input.getFileName() + extension).toAbsolutePath().normalize();
+    }
+
+    private void convert(Path input) throws IOException {
+        Path output = outputFile(input);
+        if (cache == null) {
+            write(new Image(input.toString()), output);
+            return;
+        }
+
+        // A cached render is copied out without decoding the image
+        byte[] encoded = Files.readAllBytes(input);
+        String key = RenderCache.key(encoded, resolution, matcher.snapshot(), cacheFormat());
+        byte[] render = cache.get(key);
+        if (render != null) {
+            Files.write(output, render);
+            cachedImages.incrementAndGet();
+            return;
+        }
+        write(new Image(encoded, input.toString()), output);
+        cache.put(key, Files.readAllBytes(output));
+    }
+
+    /**
+     * Returns the render cache format of the output method, naming the writer used by
+     * {@link #write}.
+     */
+    private String cacheFormat() {
+        if (outputMethod.equals(HTML_OUTPUT)) {
+            return RENDER_FORMAT_HTML_SINK;
+        }
+        return outputMethod.equals(COMPACT_HTML_OUTPUT) ? RENDER_FORMAT_COMPACT_HTML : RENDER_FORMAT_CONSOLE_TEXT;
+    }
+
+    private void write(Image image, Path output) throws IOException {
+        long pixels = (long) image.getWidth() * image.getHeight();
+        image.padImage();
+        if (resolution > image.getWidth() || resolution > image.getHeight()) {
+            throw new IllegalArgumentException(RES_EXCEEDING_BOUNDARIES);
+        }
+        AsciiArtAlgorithm algorithm = new AsciiArtAlgorithm(image, resolution, matcher);
+
+        if (outputMethod.equals(HTML_OUTPUT)) {
+            try (HtmlRowSink sink = new HtmlRowSink(output.toString(), DEFAULT_FONT)) {
+                algorithm.run(sink);
+            }
+        } else if (outputMethod.equals(COMPACT_HTML_OUTPUT)) {
+            char[][] asciiArt = algorithm.run();
+            RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.OUTPUT);
+            new CompactHtmlOutput(output.toString(), DEFAULT_FONT, true).out(asciiArt);
+            RenderStats.end(probe);
+        } else {
+            char[][] asciiArt = algorithm.run();
+            RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.OUTPUT);
+            writeText(output, asciiArt);
+            RenderStats.end(probe);
+        }
+        convertedImages.incrementAndGet();
+        convertedPixels.addAndGet(pixels);
+    }
+
+    private static void writeText(Path path, char[][] asciiArt) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (char[] row : asciiArt) {
+                writer.write(row);
+                writer.newLine();
+            }
+        }
+    }
+
+    private void printSummary(long elapsedNanos) {
+        double seconds = elapsedNanos / NANOS_PER_SECOND;
+        long images = convertedImages.get();
+        double megapixels = convertedPixels.get() / PIXELS_PER_MEGAPIXEL;
+        System.out.println(String.format(Locale.ROOT, BATCH_SUMMARY,
+                images, seconds, images / seconds, megapixels / seconds));
+    }
+
+    /**
+     * Lists the images matched by a directory or a glob such as {@code frames/*.png}.
+     *
+     * @param input a directory or a glob.
+     * @return the matching files, sorted by name.
+     * @throws IOException if the directory cannot be read.
+     */
+    public static List<Path> listInputs(String input) throws IOException {
+        Path path = Paths.get(input);
+        Path directory;
+        String glob;
+        if (Files.isDirectory(path)) {
+            directory = path;
+            glob = ANY_FILE_GLOB;
+        } else {
+            directory = path.getParent() == null ? Paths.get(".") : path.getParent();
+            glob = path.getFileName().toString();
+        }
+        List<Path> inputs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    inputs.add(file);
+                }
+            }
+        }
+        inputs.sort(null);
+        return inputs;
+    }
+
+    /**
+     * Builds a matcher from a charset description: {@code all}, a range such as
+     * {@code a-z}, or a literal list of characters.
+     *
+     * @param charset the charset description.
+     * @return the matcher.
+     */
+    public static SubImgCharMatcher createMatcher(String charset) {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(new char[0]);
+        if (charset.equals(ALL)) {
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+        } else if (charset.length() == FOURTH && charset.charAt(SECOND) == hyphen) {
+            matcher.addRange((char) Math.min(charset.charAt(FIRST), charset.charAt(THIRD)),
+                    (char) Math.max(charset.charAt(FIRST), charset.charAt(THIRD)));
+        } else {
+            matcher.addChars(charset);
+        }
+        if (matcher.getSetSize() < THIRD) {
+            throw new IllegalArgumentException(ERROR_CHARSET_TOO_SMALL);
+        }
+        return matcher;
+    }
+
+    /**
+     * Parses a round mode argument.
+     *
+     * @param round up, down or abs.
+     * @return the round mode.
+     */
+    static ROUND parseRound(String round) {
+        switch (round) {
+            case ROUND_UP:
+                return ROUND.UP;
+            case ROUND_DOWN:
+                return ROUND.DOWN;
+            case ROUND_ABS:
+                return ROUND.ABS;
+            default:
+                throw new IllegalArgumentException(ROUND_INCORRECT_FORMAT);
+        }
+    }
+
+    /**
+     * Main entry point for batch conversion.
+     * @param args input, resolution, charset, round mode, output method, optionally threads,
+     *             optionally the output directory and optionally the cache directory.
+     */
+    public static void main(String[] args) {
+        if (args.length < BATCH_ARGS || args.length > BATCH_ARGS + FOURTH) {
+            System.out.println(BATCH_USAGE);
+            return;
+        }
+        try {
+            int resolution = Integer.parseInt(args[SECOND]);
+            if (resolution <= 0) {
+                throw new IllegalArgumentException(RES_NOT_POSITIVE);
+            }
+            SubImgCharMatcher matcher = createMatcher(args[THIRD]);
+            matcher.setRound(parseRound(args[FOURTH]));
+            String outputMethod = args[FOURTH + 1];
+            if (!outputMethod.equals(CONSOLE_OUTPUT) && !outputMethod.equals(HTML_OUTPUT)
+                    && !outputMethod.equals(COMPACT_HTML_OUTPUT)) {
+                throw new IllegalArgumentException(OUTPUT_INCORRECT_FORMAT);
+            }
+            int threads = args.length > BATCH_ARGS ? Integer.parseInt(args[BATCH_ARGS])
+                    : Runtime.getRuntime().availableProcessors();
+            Path outputDirectory = Paths.get(args.length > BATCH_ARGS + 1
+                    ? args[BATCH_ARGS + 1] : CURRENT_DIRECTORY);
+            Files.createDirectories(outputDirectory);
+            RenderCache cache = args.length > BATCH_ARGS + 2
+                    ? new RenderCache(RENDER_CACHE_MAX_BYTES, Paths.get(args[BATCH_ARGS + 2])) : null;
+            new BatchConverter(resolution, matcher, outputMethod, Math.max(1, threads), outputDirectory, cache)
+                    .run(listInputs(args[FIRST]));
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -39,6 +39,117 @@ public final class Constants {
      */
     public static final double RGB_CONSTANT = 255.0;
 
+    /**
+     * Scale turning the channel weights above into exact integers.
+     */
+    public static final int LUMA_SCALE = 10000;
+    /**
+     * Integer form of RED_CONSTANT, scaled by LUMA_SCALE.
+     */
+    public static final int RED_WEIGHT = (int) Math.round(RED_CONSTANT * LUMA_SCALE);
+    /**
+     * Integer form of GREEN_CONSTANT, scaled by LUMA_SCALE.
+     */
+    public static final int GREEN_WEIGHT = (int) Math.round(GREEN_CONSTANT * LUMA_SCALE);
+    /**
+     * Integer form of BLUE_CONSTANT, scaled by LUMA_SCALE.
+     */
+    public static final int BLUE_WEIGHT = (int) Math.round(BLUE_CONSTANT * LUMA_SCALE);
+
+    /**
+     * Rec. 601 channel weights, scaled by LUMA_SCALE.
+     */
+    public static final int REC601_RED_WEIGHT = 2990;
+    /**
+     * Rec. 601 channel weights, scaled by LUMA_SCALE.
+     */
+    public static final int REC601_GREEN_WEIGHT = 5870;
+    /**
+     * Rec. 601 channel weights, scaled by LUMA_SCALE.
+     */
+    public static final int REC601_BLUE_WEIGHT = 1140;
+
+    /**
+     * Number of values of a single 8 bit channel.
+     */
+    public static final int CHANNEL_LEVELS = 256;
+
+    /**
+     * sRGB transfer function constants: encoded values up to the threshold are linear,
+     * above it they follow ((c + offset) / (1 + offset)) ^ gamma.
+     */
+    public static final double SRGB_LINEAR_THRESHOLD = 0.04045;
+    /**
+     * sRGB transfer function constants: encoded values up to the threshold are linear,
+     * above it they follow ((c + offset) / (1 + offset)) ^ gamma.
+     */
+    public static final double SRGB_LINEAR_SLOPE = 12.92;
+    /**
+     * sRGB transfer function constants: encoded values up to the threshold are linear,
+     * above it they follow ((c + offset) / (1 + offset)) ^ gamma.
+     */
+    public static final double SRGB_OFFSET = 0.055;
+    /**
+     * sRGB transfer function constants: encoded values up to the threshold are linear,
+     * above it they follow ((c + offset) / (1 + offset)) ^ gamma.
+     */
+    public static final double SRGB_GAMMA = 2.4;
+
+    /**
+     * Brightness of a white pixel, as summed in the luminance table.
+     */
+    public static final int WHITE_LUMINANCE = (RED_WEIGHT + GREEN_WEIGHT + BLUE_WEIGHT) * (int) RGB_CONSTANT;
+
+    /**
+     * Mask selecting the RGB bits of a packed ARGB int.
+     */
+    public static final int RGB_MASK = 0xFFFFFF;
+    /**
+     * Mask selecting a single 8 bit channel.
+     */
+    public static final int CHANNEL_MASK = 0xFF;
+    /**
+     * Bit offset of the red channel in a packed RGB int.
+     */
+    public static final int RED_SHIFT = 16;
+    /**
+     * Bit offset of the green channel in a packed RGB int.
+     */
+    public static final int GREEN_SHIFT = 8;
+    /**
+     * Number of colour channels in a BGR pixel.
+     */
+    public static final int BGR_CHANNELS = 3;
+
+    /**
+     * System property choosing the vectorized pixel kernel at startup.
+     */
+    public static final String VECTOR_PROPERTY = "ascii_art.vector";
+
+    /**
+     * Module providing the Vector API.
+     */
+    public static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+    /**
+     * Class of the vectorized pixel kernel, compiled separately from the vector directory
+     * and loaded by name.
+     */
+    public static final String VECTOR_KERNEL_CLASS = "image.VectorPixelKernel";
+
+    /**
+     * Number of channels summed for the mean color of a sub-image.
+     */
+    public static final int RGB_CHANNELS = 3;
+    /**
+     * Subsampling factor that keeps every pixel of a decoded image.
+     */
+    public static final int NO_SUBSAMPLING = 1;
+    /**
+     * Packed RGB value of a white pixel, used for padding.
+     */
+    public static final int WHITE_RGB = 0xFFFFFF;
+
     /**
      * Factors used for offset adjustments in X direction.
      */
@@ -53,6 +164,22 @@ public final class Constants {
      */
     public static final int DEFAULT_BOOL_ARRAY_SIZE = 16;
 
+    /**
+     * Number of cells in a glyph or tile shape mask, one bit each.
+     */
+    public static final int MASK_CELLS = DEFAULT_BOOL_ARRAY_SIZE * DEFAULT_BOOL_ARRAY_SIZE;
+
+    /**
+     * Number of longs holding a shape mask.
+     */
+    public static final int MASK_WORDS = (MASK_CELLS + Long.SIZE - 1) / Long.SIZE;
+
+    /**
+     * Scaled luminance per pixel from which a tile cell counts as white in a shape mask,
+     * half of the luminance of white.
+     */
+    public static final long SHAPE_THRESHOLD = WHITE_LUMINANCE / 2;
+
     /**
      * First in list
      */
@@ -80,6 +207,68 @@ public final class Constants {
      */
     public static final int RES_MULTI = 2;
 
+    /**
+     * Default number of threads used for rendering (sequential).
+     */
+    public static final int DEFAULT_PARALLELISM = 1;
+
+    /**
+     * Default minimal tile count for which parallel rendering is used.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 4096;
+
+    /**
+     * System property setting the default number of threads used to render a grid,
+     * for every entry point.
+     */
+    public static final String PARALLELISM_PROPERTY = "ascii_art.parallelism";
+
+    /**
+     * System property setting the default minimal tile count for which parallel
+     * rendering is used, for every entry point.
+     */
+    public static final String PARALLEL_THRESHOLD_PROPERTY = "ascii_art.parallelThreshold";
+
+    /**
+     * Number of row bands created per rendering thread, for load balancing.
+     */
+    public static final int BANDS_PER_THREAD = 4;
+
+    /**
+     * Number of resolutions whose brightness grid is kept in the cache.
+     */
+    public static final int BRIGHTNESS_CACHE_SIZE = 8;
+
+    /**
+     * Load factor used for hash based caches.
+     */
+    public static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**
+     * Number of buckets in the compiled brightness to character lookup table.
+     */
+    public static final int LOOKUP_BUCKETS = 4096;
+
+    /**
+     * Maximal number of matcher snapshots kept for reuse by identical charsets.
+     */
+    public static final int SNAPSHOT_INTERN_SIZE = 64;
+
+    /**
+     * Separator between the rounding mode and the characters of a snapshot key.
+     */
+    public static final char SNAPSHOT_KEY_SEPARATOR = ':';
+
+    /**
+     * Marks a lookup bucket that must fall back to an exact search.
+     */
+    public static final int MIXED_BUCKET = -1;
+
+    /**
+     * Offset of a bucket's center from its start, in buckets.
+     */
+    public static final double HALF = 0.5;
+
     /**
      * ASCII value range constants for printable characters.
      */
@@ -151,6 +340,76 @@ public final class Constants {
      */
     public static final String ASCIIART = "asciiart";
 
+    /**
+     * Command string for showing and controlling render statistics.
+     */
+    public static final String STATS = "stats";
+
+    /**
+     * Arguments of the stats command.
+     */
+    public static final String STATS_ON = "on";
+    /**
+     * Arguments of the stats command.
+     */
+    public static final String STATS_OFF = "off";
+    /**
+     * Arguments of the stats command.
+     */
+    public static final String STATS_RESET = "reset";
+
+    /**
+     * Command string for choosing the luminance weighting profile.
+     */
+    public static final String LUMA = "luma";
+
+    /**
+     * Arguments of the luma command.
+     */
+    public static final String LUMA_709 = "709";
+    /**
+     * Arguments of the luma command.
+     */
+    public static final String LUMA_601 = "601";
+    /**
+     * Arguments of the luma command.
+     */
+    public static final String LUMA_SRGB = "srgb";
+
+    /**
+     * Command string for choosing how tiles are matched to characters.
+     */
+    public static final String MATCH = "match";
+
+    /**
+     * Arguments of the match command.
+     */
+    public static final String MATCH_BRIGHTNESS = "brightness";
+    /**
+     * Arguments of the match command.
+     */
+    public static final String MATCH_SHAPE = "shape";
+
+    /**
+     * Command string for switching color output on and off.
+     */
+    public static final String COLOR = "color";
+
+    /**
+     * Arguments of the color command.
+     */
+    public static final String COLOR_ON = "on";
+    /**
+     * Arguments of the color command.
+     */
+    public static final String COLOR_OFF = "off";
+
+    /**
+     * Command string for setting the number of rendering threads and, optionally,
+     * the minimal tile count for which they are used.
+     */
+    public static final String PARALLEL = "parallel";
+
     /**
      * Command string for rounding operations.
      */
@@ -250,6 +509,680 @@ public final class Constants {
     public static final String SEARCH_OUT_OF_BOUND =
             "Search is out of boundaries";
 
+    /**
+     * Error message for incorrect format of the stats command.
+     */
+    public static final String STATS_INCORRECT_FORMAT =
+            "Did not execute stats due to incorrect format.";
+
+    /**
+     * Error message for incorrect format of the luma command.
+     */
+    public static final String LUMA_INCORRECT_FORMAT =
+            "Did not change luminance profile due to incorrect format.";
+
+    /**
+     * Error message for incorrect format of the match command.
+     */
+    public static final String MATCH_INCORRECT_FORMAT =
+            "Did not change matching due to incorrect format.";
+
+    /**
+     * Error message for incorrect format of the color command.
+     */
+    public static final String COLOR_INCORRECT_FORMAT =
+            "Did not change color due to incorrect format.";
+
+    /**
+     * Error message for incorrect format of the parallel command.
+     */
+    public static final String PARALLEL_INCORRECT_FORMAT =
+            "Did not change parallelism due to incorrect format.";
+
+    /**
+     * Message shown by the stats command while collection is off.
+     */
+    public static final String STATS_DISABLED =
+            "Stats collection is off. Use 'stats on' to start it.";
+
+    /**
+     * Layout of the stats table.
+     */
+    public static final String STATS_HEADER = "%-16s %8s %12s %12s %14s";
+    /**
+     * Layout of the stats table.
+     */
+    public static final String STATS_ROW = "%-16s %8d %12.2f %12.3f %14.2f";
+    /**
+     * Column titles of the stats table.
+     */
+    public static final String STATS_STAGE = "stage";
+    /**
+     * Column titles of the stats table.
+     */
+    public static final String STATS_CALLS = "calls";
+    /**
+     * Column titles of the stats table.
+     */
+    public static final String STATS_TOTAL = "total ms";
+    /**
+     * Column titles of the stats table.
+     */
+    public static final String STATS_AVERAGE = "avg ms";
+    /**
+     * Column titles of the stats table.
+     */
+    public static final String STATS_ALLOCATED = "allocated MB";
+
+    /**
+     * Error message for an invalid parallelism level.
+     */
+    public static final String PARALLELISM_INCORRECT_FORMAT =
+            "Parallelism must be at least 1.";
+
+    /**
+     * Error message for a file no image reader can decode.
+     */
+    public static final String UNSUPPORTED_IMAGE =
+            "No image reader can decode ";
+
+    /**
+     * Error message for a pixel buffer that does not match the image dimensions.
+     */
+    public static final String RASTER_SIZE_MISMATCH =
+            "Pixel buffer size does not match image dimensions.";
+
+    /**
+     * Usage message of the batch converter.
+     */
+    public static final String BATCH_USAGE =
+            "Usage: BatchConverter <directory or glob> <resolution> <charset> <round> <output> "
+                    + "[threads [output directory [cache directory]]]";
+
+    /**
+     * Number of mandatory batch converter arguments.
+     */
+    public static final int BATCH_ARGS = 5;
+
+    /**
+     * Summary printed after a batch: images, seconds, images/s and megapixels/s.
+     */
+    public static final String BATCH_SUMMARY =
+            "Converted %d images in %.2f s (%.2f images/s, %.2f megapixels/s)";
+
+    /**
+     * Summary printed after a batch with a cache: the images copied out of the cache,
+     * which are left out of the throughput.
+     */
+    public static final String BATCH_CACHED_SUMMARY = "Copied %d more images from the cache";
+
+    /**
+     * Error message for a resolution that is not positive.
+     */
+    public static final String RES_NOT_POSITIVE = "Resolution must be a positive integer.";
+
+    /**
+     * Error message for two batch inputs that would be written to the same output file.
+     */
+    public static final String BATCH_OUTPUT_COLLISION =
+            "Two inputs would be written to the same output file: ";
+
+    /**
+     * Default output directory of the batch converter.
+     */
+    public static final String CURRENT_DIRECTORY = ".";
+
+    /**
+     * Glob matching every file of a directory.
+     */
+    public static final String ANY_FILE_GLOB = "*";
+
+    /**
+     * File extensions of batch outputs.
+     */
+    public static final String HTML_EXTENSION = ".html";
+    /**
+     * File extensions of batch outputs.
+     */
+    public static final String TEXT_EXTENSION = ".txt";
+
+    /**
+     * Unit conversions used in throughput reports.
+     */
+    public static final double NANOS_PER_SECOND = 1e9;
+    /**
+     * Unit conversions used in throughput reports.
+     */
+    public static final double PIXELS_PER_MEGAPIXEL = 1e6;
+
+    /**
+     * Usage message of the sequence renderer.
+     */
+    public static final String SEQUENCE_USAGE =
+            "Usage: SequenceRenderer <animation, directory or glob> <resolution> <threshold> <console|none>";
+
+    /**
+     * Per-frame report: index, milliseconds, changed tiles and total tiles.
+     */
+    public static final String FRAME_SUMMARY =
+            "Frame %d: %.2f ms, %d/%d tiles changed";
+
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    public static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Names used to read frame positions from GIF metadata.
+     */
+    public static final String GIF_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+    /**
+     * Names used to read frame positions from GIF metadata.
+     */
+    public static final String GIF_IMAGE_DESCRIPTOR = "ImageDescriptor";
+    /**
+     * Names used to read frame positions from GIF metadata.
+     */
+    public static final String GIF_LEFT_POSITION = "imageLeftPosition";
+    /**
+     * Names used to read frame positions from GIF metadata.
+     */
+    public static final String GIF_TOP_POSITION = "imageTopPosition";
+
+    /**
+     * Names used to read the animation size from GIF stream metadata.
+     */
+    public static final String GIF_STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    /**
+     * Names used to read the animation size from GIF stream metadata.
+     */
+    public static final String GIF_SCREEN_DESCRIPTOR = "LogicalScreenDescriptor";
+    /**
+     * Names used to read the animation size from GIF stream metadata.
+     */
+    public static final String GIF_SCREEN_WIDTH = "logicalScreenWidth";
+    /**
+     * Names used to read the animation size from GIF stream metadata.
+     */
+    public static final String GIF_SCREEN_HEIGHT = "logicalScreenHeight";
+
+    /**
+     * Usage message of the render server.
+     */
+    public static final String SERVER_USAGE =
+            "Usage: RenderServer <port> [max concurrent renders [cache directory | off]]";
+
+    /**
+     * Message printed once the render server listens: port and concurrency limit.
+     */
+    public static final String SERVER_STARTED = "Rendering on http://localhost:%d%s with at most %d concurrent renders";
+
+    /**
+     * Path of the render endpoint.
+     */
+    public static final String SERVER_PATH = "/render";
+
+    /**
+     * Query parameters of the render endpoint.
+     */
+    public static final String PARAM_RESOLUTION = "res";
+    /**
+     * Query parameters of the render endpoint.
+     */
+    public static final String PARAM_CHARSET = "chars";
+    /**
+     * Query parameters of the render endpoint.
+     */
+    public static final String PARAM_ROUND = "round";
+    /**
+     * Query parameters of the render endpoint.
+     */
+    public static final String PARAM_OUTPUT = "output";
+    /**
+     * Query parameters of the render endpoint.
+     */
+    public static final String PARAM_CACHE = "cache";
+
+    /**
+     * Value turning the render cache off, as the render server's cache directory
+     * argument or as the render endpoint's cache parameter.
+     */
+    public static final String CACHE_OFF = "off";
+
+    /**
+     * Defaults of the render endpoint's query parameters.
+     */
+    public static final String DEFAULT_SERVER_CHARSET = "0-9";
+
+    /**
+     * Maximal number of charset and round combinations whose matchers the render
+     * server keeps; requests for other combinations build a matcher of their own.
+     */
+    public static final int SERVER_MATCHER_CACHE_SIZE = 64;
+
+    /**
+     * Name of the uploaded image in error messages of the render server.
+     */
+    public static final String SERVER_UPLOAD = "the uploaded image";
+
+    /**
+     * Maximal size of an image uploaded to the render server, in bytes.
+     */
+    public static final int SERVER_MAX_UPLOAD_BYTES = 16 << 20;
+
+    /**
+     * Separators of a query string.
+     */
+    public static final String QUERY_SEPARATOR = "&";
+    /**
+     * Separators of a query string.
+     */
+    public static final char QUERY_ASSIGNMENT = '=';
+    /**
+     * Separators of a query string.
+     */
+    public static final char QUERY_START = '?';
+
+    /**
+     * HTTP method accepted by the render endpoint.
+     */
+    public static final String HTTP_POST = "POST";
+
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_OK = 200;
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_BAD_REQUEST = 400;
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_PAYLOAD_TOO_LARGE = 413;
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_INTERNAL_ERROR = 500;
+    /**
+     * HTTP status codes sent by the render server.
+     */
+    public static final int HTTP_UNAVAILABLE = 503;
+
+    /**
+     * Response headers of the render server.
+     */
+    public static final String CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Request header announcing the size of an upload.
+     */
+    public static final String CONTENT_LENGTH = "Content-Length";
+    /**
+     * Response headers of the render server.
+     */
+    public static final String TEXT_CONTENT_TYPE = "text/plain; charset=utf-8";
+    /**
+     * Response headers of the render server.
+     */
+    public static final String HTML_CONTENT_TYPE = "text/html; charset=utf-8";
+
+    /**
+     * Error messages of the render server.
+     */
+    public static final String SERVER_BUSY = "Too many renders in progress, retry later.";
+    /**
+     * Error messages of the render server.
+     */
+    public static final String SERVER_POST_ONLY = "Upload the image with POST.";
+    /**
+     * Error messages of the render server.
+     */
+    public static final String SERVER_BAD_RESOLUTION = "Resolution must be a positive integer.";
+    /**
+     * Error messages of the render server.
+     */
+    public static final String SERVER_RENDER_FAILED = "The image could not be rendered.";
+    /**
+     * Error messages of the render server.
+     */
+    public static final String SERVER_UPLOAD_TOO_LARGE = "The image must not exceed " + SERVER_MAX_UPLOAD_BYTES
+            + " bytes.";
+
+    /**
+     * Path of the render server's cache report.
+     */
+    public static final String SERVER_CACHE_PATH = "/cache";
+
+    /**
+     * Response header telling whether a render came from the cache, and its values.
+     */
+    public static final String RENDER_CACHE_HEADER = "X-Render-Cache";
+    /**
+     * Response header telling whether a render came from the cache, and its values.
+     */
+    public static final String RENDER_CACHE_HIT = "hit";
+    /**
+     * Response header telling whether a render came from the cache, and its values.
+     */
+    public static final String RENDER_CACHE_MISS = "miss";
+    /**
+     * Response header telling whether a render came from the cache, and its values.
+     */
+    public static final String RENDER_CACHE_SHARED = "shared";
+
+    /**
+     * Answer of the render server's cache report when the cache is off.
+     */
+    public static final String RENDER_CACHE_DISABLED = "Render cache is off.";
+
+    /**
+     * Addition of the render server to the cache report: the misses answered by
+     * waiting for a render of the same key already in progress.
+     */
+    public static final String RENDER_CACHE_SHARED_SUMMARY = ", %d of the misses shared a render in progress";
+
+    /**
+     * Default maximal total size of the renders a render cache keeps in memory.
+     */
+    public static final long RENDER_CACHE_MAX_BYTES = 64L << 20;
+
+    /**
+     * Initial capacity of the in-memory tier of a render cache.
+     */
+    public static final int RENDER_CACHE_INITIAL_CAPACITY = 256;
+
+    /**
+     * Digest algorithm of render cache keys.
+     */
+    public static final String RENDER_CACHE_DIGEST = "SHA-256";
+
+    /**
+     * Separator of the settings hashed into a render cache key.
+     */
+    public static final String RENDER_CACHE_KEY_SEPARATOR = ":";
+
+    /**
+     * Version of the render cache entries, hashed into every key. Changing how a render
+     * is written must change it, so entries written the old way are no longer found.
+     */
+    public static final int RENDER_CACHE_FORMAT_VERSION = 2;
+
+    /**
+     * Formats of render cache entries, naming the writer that produced the bytes.
+     * Console text written by the batch converter, one row per line.
+     */
+    public static final String RENDER_FORMAT_CONSOLE_TEXT = "console-text";
+    /**
+     * Formats of render cache entries, naming the writer that produced the bytes.
+     * Console output written by a ConsoleRowSink, each character followed by a space.
+     */
+    public static final String RENDER_FORMAT_CONSOLE_SINK = "console-sink";
+    /**
+     * Formats of render cache entries, naming the writer that produced the bytes.
+     * HTML written by an HtmlRowSink.
+     */
+    public static final String RENDER_FORMAT_HTML_SINK = "html-sink";
+    /**
+     * Formats of render cache entries, naming the writer that produced the bytes.
+     * Compact HTML written by a CompactHtmlOutput, collapsing the spaces ending each row.
+     */
+    public static final String RENDER_FORMAT_COMPACT_HTML = "compact-html";
+
+    /**
+     * File extensions of the disk tier of a render cache.
+     */
+    public static final String RENDER_CACHE_EXTENSION = ".render";
+    /**
+     * File extensions of the disk tier of a render cache.
+     */
+    public static final String RENDER_CACHE_TEMPORARY_EXTENSION = ".tmp";
+
+    /**
+     * Report of a render cache: memory hits, disk hits, misses, evictions,
+     * entries in memory and their total size in bytes.
+     */
+    public static final String RENDER_CACHE_SUMMARY =
+            "Render cache: %d hits, %d disk hits, %d misses, %d evictions, %d entries (%d bytes)";
+
+    /**
+     * Usage message of the render load client.
+     */
+    public static final String LOAD_CLIENT_USAGE =
+            "Usage: RenderLoadClient <url> <image> <requests> <concurrency> [off]";
+
+    /**
+     * Summary printed by the render load client: requests, seconds, requests/s,
+     * rejected requests, failed requests and latency percentiles in milliseconds.
+     */
+    public static final String LOAD_CLIENT_SUMMARY = "%d requests in %.2f s (%.2f requests/s), "
+            + "%d rejected, %d failed, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms";
+
+    /**
+     * Percentiles reported by the render load client.
+     */
+    public static final double P50 = 0.50;
+    /**
+     * Percentiles reported by the render load client.
+     */
+    public static final double P99 = 0.99;
+
+    /**
+     * Dimensions of the synthetic benchmark image, deliberately not powers of 2.
+     */
+    public static final int BENCHMARK_IMAGE_WIDTH = 1500;
+    /**
+     * Dimensions of the synthetic benchmark image, deliberately not powers of 2.
+     */
+    public static final int BENCHMARK_IMAGE_HEIGHT = 1000;
+
+    /**
+     * Sub-image size used by the tile split benchmark.
+     */
+    public static final int BENCHMARK_TILE_SIZE = 16;
+
+    /**
+     * Number of brightness values looked up per matcher benchmark operation.
+     */
+    public static final int BENCHMARK_PROBES = 4096;
+
+    /**
+     * Character range added and removed by the charset churn benchmark.
+     */
+    public static final char BENCHMARK_CHURN_FIRST = 'a';
+    /**
+     * Character range added and removed by the charset churn benchmark.
+     */
+    public static final char BENCHMARK_CHURN_LAST = 'z';
+
+    /**
+     * Characters the charset churn benchmark cycles through, one per operation, so its
+     * charsets outnumber the interned snapshots.
+     */
+    public static final char BENCHMARK_CHURN_SALT_FIRST = 'A';
+    /**
+     * Characters the charset churn benchmark cycles through, one per operation, so its
+     * charsets outnumber the interned snapshots.
+     */
+    public static final char BENCHMARK_CHURN_SALT_LAST = 'Z';
+
+    /**
+     * Error message of the kernel benchmarks run without the vectorized kernel.
+     */
+    public static final String BENCHMARK_NO_VECTOR_KERNEL =
+            "The vectorized kernel needs --add-modules jdk.incubator.vector and the vector classes.";
+
+    /**
+     * Brightness looked up after each churn step, to force the lookup to be rebuilt.
+     */
+    public static final double MIN_BRIGHTNESS_PROBE = 0.0;
+
+    /**
+     * Character rendered by the glyph benchmark.
+     */
+    public static final char BENCHMARK_GLYPH = '@';
+
+    /**
+     * Temporary files holding the encoded benchmark image.
+     */
+    public static final String BENCHMARK_TEMP_PREFIX = "ascii_bench";
+    /**
+     * Temporary files holding the encoded benchmark image.
+     */
+    public static final String BENCHMARK_PNG_SUFFIX = ".png";
+    /**
+     * Temporary files holding the encoded benchmark image.
+     */
+    public static final String BENCHMARK_JPG_SUFFIX = ".jpg";
+
+    /**
+     * Bytes in a megabyte, used in allocation reports.
+     */
+    public static final double BYTES_PER_MEGABYTE = 1024.0 * 1024.0;
+
+    /**
+     * Size of the byte buffer of streaming outputs.
+     */
+    public static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Characters below this value are single byte in UTF-8.
+     */
+    public static final int ASCII_LIMIT = 128;
+
+    /**
+     * Number of rendered rows an asynchronous output may hold before rendering waits.
+     */
+    public static final int ASYNC_SINK_CAPACITY = 256;
+
+    /**
+     * Name of the thread writing asynchronous output.
+     */
+    public static final String ASYNC_SINK_THREAD = "ascii-output-writer";
+
+    /**
+     * Start of the HTML output, formatted with the font name.
+     */
+    public static final String HTML_HEADER = "<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\">\n"
+            + "<title>ASCII Art</title>\n</head>\n<body style=\"margin:0;\">\n"
+            + "<pre style=\"font-family:'%s';font-size:4px;line-height:1;letter-spacing:1.5px;\">\n";
+
+    /**
+     * End of the HTML output.
+     */
+    public static final String HTML_FOOTER = "</pre>\n</body>\n</html>\n";
+
+    /**
+     * Row separator of the HTML output.
+     */
+    public static final String HTML_LINE_BREAK = "\n";
+
+    /**
+     * HTML escapes of characters with a meaning in markup.
+     */
+    public static final String HTML_AMP = "&amp;";
+    /**
+     * HTML escapes of characters with a meaning in markup.
+     */
+    public static final String HTML_LT = "&lt;";
+    /**
+     * HTML escapes of characters with a meaning in markup.
+     */
+    public static final String HTML_GT = "&gt;";
+
+    /**
+     * Start of a colored run of characters in the HTML output, followed by six hex digits.
+     */
+    public static final String HTML_COLOR_START = "<span style=\"color:#";
+    /**
+     * End of the opening tag of a colored run in the HTML output.
+     */
+    public static final String HTML_COLOR_TAG_END = "\">";
+    /**
+     * End of a colored run of characters in the HTML output.
+     */
+    public static final String HTML_COLOR_END = "</span>";
+    /**
+     * Number of hex digits of an HTML color.
+     */
+    public static final int HTML_COLOR_DIGITS = 6;
+    /**
+     * Radix, bits and mask of a single hex digit.
+     */
+    public static final int HEX_RADIX = 16;
+    /**
+     * Radix, bits and mask of a single hex digit.
+     */
+    public static final int HEX_DIGIT_BITS = 4;
+    /**
+     * Radix, bits and mask of a single hex digit.
+     */
+    public static final int HEX_DIGIT_MASK = 0xF;
+
+    /**
+     * Start of the ANSI escape setting a 24-bit foreground color, followed by
+     * the red, green and blue values separated by {@link #ANSI_SEPARATOR}.
+     */
+    public static final String ANSI_COLOR_START = "\u001b[38;2;";
+    /**
+     * Separator of the values of an ANSI escape.
+     */
+    public static final char ANSI_SEPARATOR = ';';
+    /**
+     * End of an ANSI color escape.
+     */
+    public static final char ANSI_COLOR_END = 'm';
+    /**
+     * ANSI escape restoring the default console colors.
+     */
+    public static final String ANSI_RESET = "\u001b[0m";
+
+    /**
+     * Start of an HTML numeric character reference.
+     */
+    public static final String HTML_REFERENCE_START = "&#";
+    /**
+     * End of an HTML numeric character reference.
+     */
+    public static final String HTML_REFERENCE_END = ";";
+
+    /**
+     * Batch output method writing compact HTML files.
+     */
+    public static final String COMPACT_HTML_OUTPUT = "compact";
+
+    /**
+     * Benchmark report comparing output sizes: case and bytes.
+     */
+    public static final String BENCHMARK_SIZE_REPORT = "%-34s %14d bytes";
+
+    /**
+     * Names of the HTML writers in output size reports.
+     */
+    public static final String BENCHMARK_HTML_ROW_SINK = "html.rowSink";
+    /**
+     * Names of the HTML writers in output size reports.
+     */
+    public static final String BENCHMARK_HTML_COMPACT = "html.compact";
+    /**
+     * Names of the HTML writers in output size reports.
+     */
+    public static final String BENCHMARK_HTML_COLLAPSED = "html.compact.collapsed";
+
+    /**
+     * Resolution of the HTML output benchmark.
+     */
+    public static final int BENCHMARK_HTML_RESOLUTION = 256;
+
+    /**
+     * Suffix of the temporary files written by the HTML output benchmark.
+     */
+    public static final String BENCHMARK_HTML_SUFFIX = ".html";
+
     /**
      * Default file name for output in HTML format.
      */
@@ -0,0 +1,233 @@
+package ascii_art;
+
+import image_char_matching.MatcherSnapshot;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * Content-addressed cache of finished renders, so converting the same image again with
+ * the same settings skips decoding, padding and matching altogether.
+ * <p>
+ * An entry is keyed by a SHA-256 digest of the encoded image file together with the
+ * resolution, the matcher snapshot (its rounding mode and every character), the format
+ * of the entry and the format version, and holds the rendered output bytes exactly as
+ * they are written out. The format names the writer that produced the bytes rather than
+ * the output method, since two writers of the same output method may write different
+ * bytes.
+ * <p>
+ * Entries are kept in memory in least recently used order, up to a total number of bytes.
+ * With a directory, every entry is also written to a file named after its key, so renders
+ * survive restarts; an entry found only on disk is loaded back into memory. The disk tier
+ * is not bounded, and a failing disk read or write only loses the disk copy.
+ * <p>
+ * The cache is thread-safe. Returned arrays are shared and must not be modified.
+ */
+public class RenderCache {
+
+    private final long maxBytes;
+    private final Path directory;
+    private final Map<String, byte[]> entries =
+            new LinkedHashMap<>(RENDER_CACHE_INITIAL_CAPACITY, DEFAULT_LOAD_FACTOR, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a RenderCache.
+     *
+     * @param maxBytes  the maximal total size of the renders kept in memory.
+     * @param directory the directory of the disk tier, or null to keep renders in memory only.
+     * @throws IOException if the directory cannot be created.
+     */
+    public RenderCache(long maxBytes, Path directory) throws IOException {
+        this.maxBytes = maxBytes;
+        this.directory = directory;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    /**
+     * Computes the key of a render.
+     *
+     * @param encoded    the bytes of the image file.
+     * @param resolution the resolution of the render.
+     * @param snapshot   the matcher snapshot the render matches against.
+     * @param format     the format of the render, one of the {@code RENDER_FORMAT_} constants.
+     * @return the key, as hex digits.
+     */
+    public static String key(byte[] encoded, int resolution, MatcherSnapshot snapshot, String format) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(RENDER_CACHE_DIGEST);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+        // The charset comes last and is length-prefixed, so no two settings share a prefix
+        String settings = RENDER_CACHE_FORMAT_VERSION + RENDER_CACHE_KEY_SEPARATOR + resolution
+                + RENDER_CACHE_KEY_SEPARATOR + format + RENDER_CACHE_KEY_SEPARATOR
+                + snapshot.getKey().length() + RENDER_CACHE_KEY_SEPARATOR + snapshot.getKey();
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        digest.update(encoded);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Returns the render of a key, looking in memory first and then on disk.
+     *
+     * @param key the key, as computed by {@link #key}.
+     * @return the rendered output, or null if the render is not cached.
+     */
+    public byte[] get(String key) {
+        byte[] render;
+        synchronized (entries) {
+            render = entries.get(key);
+        }
+        if (render != null) {
+            hits.incrementAndGet();
+            return render;
+        }
+        if (directory != null) {
+            try {
+                render = Files.readAllBytes(directory.resolve(key + RENDER_CACHE_EXTENSION));
+                diskHits.incrementAndGet();
+                remember(key, render);
+                return render;
+            } catch (NoSuchFileException e) {
+                // Not rendered before
+            } catch (IOException e) {
+                // An unreadable entry is rendered again and rewritten
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the render of a key in memory and, with a directory, on disk.
+     *
+     * @param key    the key, as computed by {@link #key}.
+     * @param render the rendered output; it must not be modified afterwards.
+     */
+    public void put(String key, byte[] render) {
+        remember(key, render);
+        if (directory == null) {
+            return;
+        }
+        Path temporary = null;
+        try {
+            // Written aside and moved in place, so a reader never sees a partial entry
+            temporary = Files.createTempFile(directory, key, RENDER_CACHE_TEMPORARY_EXTENSION);
+            Files.write(temporary, render);
+            Files.move(temporary, directory.resolve(key + RENDER_CACHE_EXTENSION),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                if (temporary != null) {
+                    Files.deleteIfExists(temporary);
+                }
+            } catch (IOException ignored) {
+                // Nothing left to clean up
+            }
+        }
+    }
+
+    /**
+     * Keeps a render in memory, evicting the least recently used ones beyond the size limit.
+     */
+    private void remember(String key, byte[] render) {
+        if (render.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            byte[] previous = entries.put(key, render);
+            bytes += render.length - (previous == null ? 0 : previous.length);
+            Iterator<byte[]> eldest = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= eldest.next().length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of renders found in memory.
+     *
+     * @return the memory hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of renders found only on disk.
+     *
+     * @return the disk hits.
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of renders found neither in memory nor on disk.
+     *
+     * @return the misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the number of renders evicted from memory.
+     *
+     * @return the evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the total size of the renders kept in memory.
+     *
+     * @return the size in bytes.
+     */
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    /**
+     * Returns a one-line report of the counters.
+     *
+     * @return the report.
+     */
+    public String getSummary() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return String.format(Locale.ROOT, RENDER_CACHE_SUMMARY, getHits(), getDiskHits(), getMisses(),
+                getEvictions(), size, getBytes());
+    }
+}
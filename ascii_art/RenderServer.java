@@ -0,0 +1,345 @@
+package ascii_art;
+
+import ascii_output.AsciiRowSink;
+import ascii_output.ConsoleRowSink;
+import ascii_output.HtmlRowSink;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * Local HTTP service rendering uploaded images to ASCII art. It listens on the loopback
+ * interface only.
+ * <p>
+ * {@code POST /render?res=128&chars=a-z&round=abs&output=html} with the image file as
+ * the request body answers with the art as console text or as an HTML page. The charset
+ * and round parameters take the same values as in {@link BatchConverter}; all parameters
+ * are optional.
+ * <p>
+ * Every request runs on its own virtual thread. At most a fixed number of renders run
+ * at the same time, and requests beyond that are answered right away with 503 rather
+ * than queued. A request holds its permit from before its upload is read, so rejected
+ * uploads are never buffered, and uploads larger than a fixed limit are answered with
+ * 413. Matchers are built once per charset and round mode and shared by all
+ * requests, as are the rendered glyphs.
+ * <p>
+ * Finished renders go through a {@link RenderCache}: uploading an image again with the
+ * same settings answers from the cache without decoding or matching. Requests missing
+ * the cache for the same key while it is being rendered wait for that render instead of
+ * starting their own, and give their permit back while they wait. The
+ * {@code X-Render-Cache} response header tells hits, misses and such shared renders
+ * apart, and {@code GET /cache} reports the cache counters. With a cache directory,
+ * renders also survive restarts. {@code cache=off} in the query renders the request
+ * regardless of the cache, and {@code off} as the cache directory turns the cache off.
+ * <p>
+ * Usage: {@code RenderServer <port> [max concurrent renders [cache directory | off]]}
+ */
+public class RenderServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore renders;
+    private final int maxConcurrent;
+    private final Map<String, SubImgCharMatcher> matchers = new ConcurrentHashMap<>();
+    private final RenderCache cache;
+    private final Map<String, CompletableFuture<byte[]>> pendingRenders = new ConcurrentHashMap<>();
+    private final AtomicLong sharedRenders = new AtomicLong();
+
+    /**
+     * Constructs a RenderServer bound to a port of the loopback interface. It does not accept requests
+     * before {@link #start()}.
+     *
+     * @param port          the port to listen on, 0 for any free port.
+     * @param maxConcurrent the maximal number of renders running at the same time.
+     * @param cache         the cache of finished renders, or null to render every request.
+     * @throws IOException if the port cannot be bound.
+     */
+    public RenderServer(int port, int maxConcurrent, RenderCache cache) throws IOException {
+        this.maxConcurrent = maxConcurrent;
+        this.renders = new Semaphore(maxConcurrent);
+        this.cache = cache;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), FIRST);
+        server.createContext(SERVER_PATH, this::handle);
+        server.createContext(SERVER_CACHE_PATH, this::handleCacheReport);
+        server.setExecutor(executor);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for the ones in progress.
+     */
+    public void stop() {
+        server.stop(FIRST);
+        executor.close();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(HTTP_POST)) {
+                send(exchange, HTTP_METHOD_NOT_ALLOWED, TEXT_CONTENT_TYPE, SERVER_POST_ONLY);
+                return;
+            }
+            String output;
+            byte[] body;
+            String cacheStatus;
+            try {
+                Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+                int resolution = parseResolution(params.getOrDefault(PARAM_RESOLUTION,
+                        String.valueOf(DEFAULT_RESOLUTION)));
+                SubImgCharMatcher matcher = getMatcher(params.getOrDefault(PARAM_CHARSET, DEFAULT_SERVER_CHARSET),
+                        BatchConverter.parseRound(params.getOrDefault(PARAM_ROUND, ROUND_ABS)));
+                output = params.getOrDefault(PARAM_OUTPUT, CONSOLE_OUTPUT);
+                if (!output.equals(CONSOLE_OUTPUT) && !output.equals(HTML_OUTPUT)) {
+                    throw new IllegalArgumentException(OUTPUT_INCORRECT_FORMAT);
+                }
+
+                String length = exchange.getRequestHeaders().getFirst(CONTENT_LENGTH);
+                if (length != null && Long.parseLong(length) > SERVER_MAX_UPLOAD_BYTES) {
+                    send(exchange, HTTP_PAYLOAD_TOO_LARGE, TEXT_CONTENT_TYPE, SERVER_UPLOAD_TOO_LARGE);
+                    return;
+                }
+                // The permit is taken before the upload is read, so a rejected upload is never buffered
+                if (!renders.tryAcquire()) {
+                    send(exchange, HTTP_UNAVAILABLE, TEXT_CONTENT_TYPE, SERVER_BUSY);
+                    return;
+                }
+                boolean holdingPermit = true;
+                try {
+                    // One byte past the limit tells an oversized upload without a length apart
+                    byte[] upload = exchange.getRequestBody().readNBytes(SERVER_MAX_UPLOAD_BYTES + 1);
+                    if (upload.length > SERVER_MAX_UPLOAD_BYTES) {
+                        send(exchange, HTTP_PAYLOAD_TOO_LARGE, TEXT_CONTENT_TYPE, SERVER_UPLOAD_TOO_LARGE);
+                        return;
+                    }
+                    if (cache == null || CACHE_OFF.equals(params.get(PARAM_CACHE))) {
+                        body = render(upload, resolution, matcher, output);
+                        cacheStatus = CACHE_OFF;
+                    } else {
+                        String key = RenderCache.key(upload, resolution, matcher.snapshot(),
+                                output.equals(HTML_OUTPUT) ? RENDER_FORMAT_HTML_SINK : RENDER_FORMAT_CONSOLE_SINK);
+                        body = cache.get(key);
+                        cacheStatus = RENDER_CACHE_HIT;
+                        if (body == null) {
+                            CompletableFuture<byte[]> pending = new CompletableFuture<>();
+                            CompletableFuture<byte[]> running = pendingRenders.putIfAbsent(key, pending);
+                            if (running == null) {
+                                body = renderAndCache(key, pending, upload, resolution, matcher, output);
+                                cacheStatus = RENDER_CACHE_MISS;
+                            } else {
+                                renders.release();
+                                holdingPermit = false;
+                                sharedRenders.incrementAndGet();
+                                body = await(running);
+                                cacheStatus = RENDER_CACHE_SHARED;
+                            }
+                        }
+                    }
+                } finally {
+                    if (holdingPermit) {
+                        renders.release();
+                    }
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                send(exchange, HTTP_BAD_REQUEST, TEXT_CONTENT_TYPE, e.getMessage());
+                return;
+            } catch (RuntimeException e) {
+                // Any other failure, such as a decoder choking on a corrupt file, still gets an answer
+                send(exchange, HTTP_INTERNAL_ERROR, TEXT_CONTENT_TYPE, SERVER_RENDER_FAILED);
+                return;
+            }
+            exchange.getResponseHeaders().set(RENDER_CACHE_HEADER, cacheStatus);
+            send(exchange, HTTP_OK, output.equals(HTML_OUTPUT) ? HTML_CONTENT_TYPE : TEXT_CONTENT_TYPE, body);
+        }
+    }
+
+    private void handleCacheReport(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            send(exchange, HTTP_OK, TEXT_CONTENT_TYPE, cache == null ? RENDER_CACHE_DISABLED
+                    : cache.getSummary() + String.format(Locale.ROOT, RENDER_CACHE_SHARED_SUMMARY, sharedRenders.get()));
+        }
+    }
+
+    /**
+     * Renders a missed key and caches the render, completing the pending render the
+     * requests missing the same key wait for.
+     */
+    private byte[] renderAndCache(String key, CompletableFuture<byte[]> pending, byte[] upload, int resolution,
+                                  SubImgCharMatcher matcher, String output) throws IOException {
+        try {
+            byte[] body = render(upload, resolution, matcher, output);
+            // Cached before the pending render is dropped, so no later miss renders it again
+            cache.put(key, body);
+            pending.complete(body);
+            return body;
+        } catch (Throwable e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingRenders.remove(key, pending);
+        }
+    }
+
+    /**
+     * Waits for a pending render, failing the same way the render failed.
+     */
+    private static byte[] await(CompletableFuture<byte[]> pending) throws IOException {
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof IllegalArgumentException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static byte[] render(byte[] upload, int resolution, SubImgCharMatcher matcher, String output)
+            throws IOException {
+        Image image = new Image(upload, SERVER_UPLOAD);
+        image.padImage();
+        if (resolution > image.getWidth() || resolution > image.getHeight()) {
+            throw new IllegalArgumentException(RES_EXCEEDING_BOUNDARIES);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AsciiRowSink sink = output.equals(HTML_OUTPUT)
+                ? new HtmlRowSink(Channels.newChannel(bytes), DEFAULT_FONT)
+                : new ConsoleRowSink(Channels.newChannel(bytes))) {
+            new AsciiArtAlgorithm(image, resolution, matcher).run(sink);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns the shared matcher of a charset and round mode, building it on first use.
+     * Renders only read the matcher's immutable snapshot, which is taken before the
+     * matcher is shared; identical charsets share one snapshot.
+     */
+    private SubImgCharMatcher getMatcher(String charset, ROUND round) {
+        String key = charset + QUERY_ASSIGNMENT + round;
+        SubImgCharMatcher matcher = matchers.get(key);
+        if (matcher != null) {
+            return matcher;
+        }
+        matcher = BatchConverter.createMatcher(charset);
+        matcher.setRound(round);
+        matcher.snapshot();
+        if (matchers.size() >= SERVER_MATCHER_CACHE_SIZE) {
+            return matcher;
+        }
+        SubImgCharMatcher shared = matchers.putIfAbsent(key, matcher);
+        return shared != null ? shared : matcher;
+    }
+
+    private static int parseResolution(String value) {
+        try {
+            int resolution = Integer.parseInt(value);
+            if (resolution > 0) {
+                return resolution;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below like any other invalid resolution
+        }
+        throw new IllegalArgumentException(SERVER_BAD_RESOLUTION);
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> params = new HashMap<>();
+        if (query == null || query.isEmpty()) {
+            return params;
+        }
+        for (String pair : query.split(QUERY_SEPARATOR)) {
+            int assignment = pair.indexOf(QUERY_ASSIGNMENT);
+            if (assignment > 0) {
+                params.put(URLDecoder.decode(pair.substring(FIRST, assignment), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(assignment + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String message)
+            throws IOException {
+        send(exchange, status, contentType, (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set(CONTENT_TYPE, contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Main entry point of the render server.
+     * @param args the port, optionally the maximal number of concurrent renders and
+     *             optionally the cache directory, or off to turn the cache off.
+     */
+    public static void main(String[] args) {
+        if (args.length < SECOND || args.length > FOURTH) {
+            System.out.println(SERVER_USAGE);
+            return;
+        }
+        try {
+            int port = Integer.parseInt(args[FIRST]);
+            int maxConcurrent = args.length > SECOND ? Integer.parseInt(args[SECOND])
+                    : Runtime.getRuntime().availableProcessors();
+            RenderCache cache = null;
+            if (args.length <= THIRD) {
+                cache = new RenderCache(RENDER_CACHE_MAX_BYTES, null);
+            } else if (!args[THIRD].equals(CACHE_OFF)) {
+                cache = new RenderCache(RENDER_CACHE_MAX_BYTES, Paths.get(args[THIRD]));
+            }
+            RenderServer server = new RenderServer(port, Math.max(1, maxConcurrent), cache);
+            server.start();
+            System.out.println(String.format(SERVER_STARTED, server.getPort(), SERVER_PATH,
+                    server.maxConcurrent));
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ascii_art;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.function.BooleanSupplier;
+
+
+/**
+ * JFR event recorded for every measured render stage, see {@link RenderStats}.
+ * It is recorded by any running JFR recording unless {@code ascii_art.RenderStage#enabled=false}.
+ */
+@Name("ascii_art.RenderStage")
+@Label("Render Stage")
+@Category("ASCII Art")
+@Description("Duration and allocation of one stage of an ASCII art render")
+class RenderStageEvent extends Event {
+
+    /**
+     * Whether a recording currently listens for this event.
+     */
+    static final BooleanSupplier TYPE_ENABLED = EventType.getEventType(RenderStageEvent.class)::isEnabled;
+
+    @Label("Stage")
+    String stage;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
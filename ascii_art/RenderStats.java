@@ -0,0 +1,176 @@
+package ascii_art;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * Timing and allocation counters for the stages of a render.
+ * Code measures a stage by calling {@link #begin(Stage)} and passing the returned probe
+ * to {@link #end(Probe)}. When collection is off and no JFR recording listens for
+ * {@link RenderStageEvent}, begin returns null and the measurement costs a lookup of
+ * whether the event type is enabled and a field read, without allocating.
+ * <p>
+ * Allocation is read from the calling thread's counter, so work done by fork/join
+ * workers is timed but its allocation is not counted. A stage that triggers another one,
+ * such as brightness building the luminance table, includes the inner stage's cost.
+ */
+public final class RenderStats {
+
+    /**
+     * The measured stages of a render.
+     */
+    public enum Stage {
+        /** Reading and decoding an image file. */
+        DECODE,
+        /** Padding an image to power of 2 dimensions. */
+        PADDING,
+        /** Building the luminance summed-area table. */
+        LUMINANCE_TABLE,
+        /** Splitting an image into sub-image views. */
+        TILE_SPLIT,
+        /** Computing the brightness grid of a resolution. */
+        BRIGHTNESS,
+        /** Compiling the brightness to character lookup table. */
+        LOOKUP_COMPILE,
+        /** Matching every tile to a character. */
+        MATCHING,
+        /** Writing the ASCII art to its output. */
+        OUTPUT
+    }
+
+    /**
+     * An ongoing measurement of one stage.
+     */
+    public static final class Probe {
+        private final Stage stage;
+        private final long startNanos;
+        private final long startBytes;
+        private final RenderStageEvent event;
+
+        private Probe(Stage stage, RenderStageEvent event) {
+            this.stage = stage;
+            this.event = event;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final LongAdder[] calls = newAdders();
+    private static final LongAdder[] nanos = newAdders();
+    private static final LongAdder[] bytes = newAdders();
+    private static volatile boolean enabled;
+
+    private RenderStats() {
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[Stage.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    private static long allocatedBytes() {
+        return THREADS.getThreadAllocatedBytes(Thread.currentThread().threadId());
+    }
+
+    /**
+     * Turns counter collection on or off. JFR events are emitted whenever a recording
+     * enables them, independently of this switch.
+     *
+     * @param enabled whether to collect counters.
+     */
+    public static void setEnabled(boolean enabled) {
+        RenderStats.enabled = enabled;
+    }
+
+    /**
+     * Returns whether counters are collected.
+     * @return true if collection is on.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts measuring a stage. Every call asks JFR whether the event type is enabled,
+     * so a recording started or reconfigured later is picked up by the next stage.
+     *
+     * @param stage the stage.
+     * @return the probe to pass to {@link #end(Probe)}, or null when nothing is measured.
+     */
+    public static Probe begin(Stage stage) {
+        RenderStageEvent event = null;
+        if (RenderStageEvent.TYPE_ENABLED.getAsBoolean()) {
+            event = new RenderStageEvent();
+            event.begin();
+        }
+        if (!enabled && event == null) {
+            return null;
+        }
+        return new Probe(stage, event);
+    }
+
+    /**
+     * Ends the measurement of a stage.
+     *
+     * @param probe the probe returned by {@link #begin(Stage)}, possibly null.
+     */
+    public static void end(Probe probe) {
+        if (probe == null) {
+            return;
+        }
+        long elapsed = System.nanoTime() - probe.startNanos;
+        long allocated = allocatedBytes() - probe.startBytes;
+        if (enabled) {
+            int index = probe.stage.ordinal();
+            calls[index].increment();
+            nanos[index].add(elapsed);
+            bytes[index].add(allocated);
+        }
+        if (probe.event != null) {
+            probe.event.end();
+            if (probe.event.shouldCommit()) {
+                probe.event.stage = probe.stage.name();
+                probe.event.allocatedBytes = allocated;
+                probe.event.commit();
+            }
+        }
+    }
+
+    /**
+     * Clears all counters.
+     */
+    public static void reset() {
+        for (Stage stage : Stage.values()) {
+            calls[stage.ordinal()].reset();
+            nanos[stage.ordinal()].reset();
+            bytes[stage.ordinal()].reset();
+        }
+    }
+
+    /**
+     * Prints a table of the counters of every stage that ran.
+     */
+    public static void print() {
+        System.out.println(String.format(Locale.ROOT, STATS_HEADER,
+                STATS_STAGE, STATS_CALLS, STATS_TOTAL, STATS_AVERAGE, STATS_ALLOCATED));
+        for (Stage stage : Stage.values()) {
+            long count = calls[stage.ordinal()].sum();
+            if (count == 0) {
+                continue;
+            }
+            double totalMillis = nanos[stage.ordinal()].sum() / NANOS_PER_MILLI;
+            System.out.println(String.format(Locale.ROOT, STATS_ROW, stage.name().toLowerCase(Locale.ROOT),
+                    count, totalMillis, totalMillis / count,
+                    bytes[stage.ordinal()].sum() / BYTES_PER_MEGABYTE));
+        }
+    }
+}
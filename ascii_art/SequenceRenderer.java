@@ -0,0 +1,294 @@
+package ascii_art;
+
+import ascii_output.ConsoleRowSink;
+import image.Image;
+import image_char_matching.MatcherSnapshot;
+import image_char_matching.SubImgCharMatcher;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * Renders a sequence of frames, such as an animated GIF or a directory of video frames,
+ * reusing the previous frame's output.
+ * <p>
+ * Every tile's pixels are compared with the same tile of the previous frame, and only the
+ * tiles that differ have their brightness computed, by reading just their pixels. A
+ * changed tile is matched again only when its brightness moved more than a threshold
+ * since the brightness its current character was chosen for. A static area therefore
+ * costs one comparison of its pixels per frame, and no luminance is computed for it.
+ * <p>
+ * Every frame is matched against one snapshot of the matcher. When the charset or the
+ * rounding mode changed since the previous frame, every tile is matched again.
+ */
+public class SequenceRenderer {
+
+    private final int resolution;
+    private final SubImgCharMatcher matcher;
+    private final double threshold;
+    private double[][] referenceBrightness;
+    private char[][] asciiArt;
+    private Image previousFrame;
+    private MatcherSnapshot lastSnapshot;
+    private int changedTiles;
+    private long lastFrameNanos;
+
+    /**
+     * Constructs a SequenceRenderer.
+     *
+     * @param resolution the resolution for ASCII art.
+     * @param matcher    the character matcher.
+     * @param threshold  the brightness change, in [0, 1], below which a tile keeps its character.
+     * @throws IllegalArgumentException if the resolution is not positive.
+     */
+    public SequenceRenderer(int resolution, SubImgCharMatcher matcher, double threshold) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException(RES_EXCEEDING_BOUNDARIES);
+        }
+        this.resolution = resolution;
+        this.matcher = matcher;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Renders the next frame of the sequence.
+     * The returned array is updated in place by the following frames. The frame is kept
+     * to be compared with the next one, so it must not change afterwards.
+     *
+     * @param frame the next frame, padded or not.
+     * @return 2D array representing ASCII art of the frame.
+     * @throws IllegalArgumentException if the resolution exceeds the padded frame.
+     */
+    public char[][] renderFrame(Image frame) {
+        long start = System.nanoTime();
+        frame.padImage();
+        if (resolution > frame.getWidth() || resolution > frame.getHeight()) {
+            throw new IllegalArgumentException(RES_EXCEEDING_BOUNDARIES);
+        }
+        int subImageSize = frame.getHeight() / resolution;
+        int numRows = frame.getHeight() / subImageSize;
+        int numCols = frame.getWidth() / subImageSize;
+
+        MatcherSnapshot snapshot = matcher.snapshot();
+
+        // The first frame, or a change of frame size or charset, renders every tile
+        boolean renderAll = asciiArt == null || asciiArt.length != numRows || asciiArt[FIRST].length != numCols
+                || snapshot != lastSnapshot;
+        if (renderAll) {
+            asciiArt = new char[numRows][numCols];
+            referenceBrightness = new double[numRows][numCols];
+            for (double[] row : referenceBrightness) {
+                Arrays.fill(row, Double.NaN);
+            }
+        }
+
+        changedTiles = 0;
+        for (int i = 0; i < numRows; i++) {
+            int top = i * subImageSize;
+            for (int j = 0; j < numCols; j++) {
+                int left = j * subImageSize;
+                if (!renderAll && frame.sameRegion(previousFrame, top, left, subImageSize)) {
+                    continue;
+                }
+                // Reading every tile is cheaper through the summed-area table
+                long luminance = renderAll ? frame.getLuminanceSum(top, left, subImageSize)
+                        : frame.scanLuminanceSum(top, left, subImageSize);
+                double value = Image.toBrightness(luminance, subImageSize);
+                // NaN marks a tile that was never rendered, and fails the comparison
+                if (!(Math.abs(value - referenceBrightness[i][j]) <= threshold)) {
+                    asciiArt[i][j] = snapshot.getCharByImageBrightness(value);
+                    referenceBrightness[i][j] = value;
+                    changedTiles++;
+                }
+            }
+        }
+        previousFrame = frame;
+        lastSnapshot = snapshot;
+        lastFrameNanos = System.nanoTime() - start;
+        return asciiArt;
+    }
+
+    /**
+     * Returns the number of tiles matched again for the last frame.
+     * @return the changed tile count.
+     */
+    public int getChangedTiles() {
+        return changedTiles;
+    }
+
+    /**
+     * Returns the time spent rendering the last frame.
+     * @return the latency in nanoseconds.
+     */
+    public long getLastFrameNanos() {
+        return lastFrameNanos;
+    }
+
+    /**
+     * Decodes the frames of an animation one after another and hands each to the consumer.
+     * Every frame is composed on a canvas of the GIF's logical screen size, or of the
+     * first frame's extent for other formats. Frames smaller than the animation are drawn
+     * at their offset over the previous frame; disposal methods other than drawing over
+     * are not applied.
+     *
+     * @param file     the animation file.
+     * @param consumer receives every composed frame.
+     * @throws IOException if the file cannot be decoded.
+     */
+    public static void forEachFrame(File file, FrameConsumer consumer) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException(UNSUPPORTED_IMAGE + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, false);
+                BufferedImage canvas = null;
+                for (int index = 0; ; index++) {
+                    BufferedImage frame;
+                    try {
+                        frame = reader.read(index);
+                    } catch (IndexOutOfBoundsException e) {
+                        return; // No more frames
+                    }
+                    Point offset = frameOffset(reader.getImageMetadata(index));
+                    if (canvas == null) {
+                        Dimension size = screenSize(reader.getStreamMetadata());
+                        if (size == null) {
+                            size = new Dimension(offset.x + frame.getWidth(), offset.y + frame.getHeight());
+                        }
+                        canvas = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+                        Graphics g = canvas.getGraphics();
+                        g.setColor(Color.WHITE);
+                        g.fillRect(FIRST, FIRST, canvas.getWidth(), canvas.getHeight());
+                        g.dispose();
+                    }
+                    Graphics g = canvas.getGraphics();
+                    g.drawImage(frame, offset.x, offset.y, null);
+                    g.dispose();
+                    consumer.accept(index, new Image(canvas));
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads the position of a GIF frame inside the animation, or (0, 0) for other formats.
+     */
+    private static Point frameOffset(IIOMetadata metadata) {
+        Node descriptor = findNode(metadata, GIF_METADATA_FORMAT, GIF_IMAGE_DESCRIPTOR);
+        if (descriptor == null) {
+            return new Point();
+        }
+        return new Point(intAttribute(descriptor, GIF_LEFT_POSITION), intAttribute(descriptor, GIF_TOP_POSITION));
+    }
+
+    /**
+     * Reads the logical screen size of a GIF, or null for other formats or an empty size.
+     */
+    private static Dimension screenSize(IIOMetadata metadata) {
+        Node descriptor = findNode(metadata, GIF_STREAM_METADATA_FORMAT, GIF_SCREEN_DESCRIPTOR);
+        if (descriptor == null) {
+            return null;
+        }
+        int width = intAttribute(descriptor, GIF_SCREEN_WIDTH);
+        int height = intAttribute(descriptor, GIF_SCREEN_HEIGHT);
+        return width > 0 && height > 0 ? new Dimension(width, height) : null;
+    }
+
+    /**
+     * Finds a top-level node of metadata in a native format, or null if the metadata is
+     * missing or in another format.
+     */
+    private static Node findNode(IIOMetadata metadata, String format, String name) {
+        if (metadata == null || !format.equals(metadata.getNativeMetadataFormatName())) {
+            return null;
+        }
+        Node root = metadata.getAsTree(format);
+        for (Node node = root.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (name.equals(node.getNodeName())) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static int intAttribute(Node node, String name) {
+        return Integer.parseInt(node.getAttributes().getNamedItem(name).getNodeValue());
+    }
+
+    /**
+     * Receives the decoded frames of a sequence.
+     */
+    @FunctionalInterface
+    public interface FrameConsumer {
+        /**
+         * Called once per frame, in order.
+         * @param index the frame index.
+         * @param frame the frame.
+         * @throws IOException if handling the frame fails.
+         */
+        void accept(int index, Image frame) throws IOException;
+    }
+
+    /**
+     * Main entry point for sequence rendering. Reports each frame's latency and
+     * changed tile count, and prints the frames when the output is console.
+     * @param args an animation, directory or glob of frames, the resolution, the threshold
+     *             and the output (console or none).
+     */
+    public static void main(String[] args) {
+        if (args.length != FOURTH + 1) {
+            System.out.println(SEQUENCE_USAGE);
+            return;
+        }
+        try {
+            SequenceRenderer renderer = new SequenceRenderer(Integer.parseInt(args[SECOND]),
+                    new SubImgCharMatcher(charSet), Double.parseDouble(args[THIRD]));
+            boolean print = args[FOURTH].equals(CONSOLE_OUTPUT);
+            FrameConsumer consumer = (index, frame) -> {
+                char[][] asciiArt = renderer.renderFrame(frame);
+                if (print) {
+                    try (ConsoleRowSink sink = new ConsoleRowSink()) {
+                        sink.begin(asciiArt.length, asciiArt[FIRST].length);
+                        for (int i = 0; i < asciiArt.length; i++) {
+                            sink.row(i, asciiArt[i]);
+                        }
+                    }
+                }
+                System.out.println(String.format(Locale.ROOT, FRAME_SUMMARY, index,
+                        renderer.getLastFrameNanos() / NANOS_PER_MILLI,
+                        renderer.getChangedTiles(), asciiArt.length * asciiArt[FIRST].length));
+            };
+
+            File input = new File(args[FIRST]);
+            if (input.isFile()) {
+                forEachFrame(input, consumer);
+            } else {
+                int index = 0;
+                for (Path frame : BatchConverter.listInputs(args[FIRST])) {
+                    consumer.accept(index++, new Image(frame.toString()));
+                }
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+}
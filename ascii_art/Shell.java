@@ -1,8 +1,13 @@
 package ascii_art;
 
-import ascii_output.ConsoleAsciiOutput;
-import ascii_output.HtmlAsciiOutput;
+import ascii_output.AsciiRowSink;
+import ascii_output.AsyncRowSink;
+import ascii_output.ColorConsoleRowSink;
+import ascii_output.ColorHtmlRowSink;
+import ascii_output.ConsoleRowSink;
+import ascii_output.HtmlRowSink;
 import image.Image;
+import image.LuminanceProfile;
 import image_char_matching.SubImgCharMatcher;
 import java.io.IOException;
 import static ascii_art.Constants.*;
@@ -17,6 +22,7 @@ public class Shell {
     private Image image;
     private SubImgCharMatcher matcher = null;
     private String outputMethod;
+    private boolean colorOutput = false;
 
     /**
      * Constructs the Shell instance.
@@ -68,6 +74,21 @@ public class Shell {
                         case ROUND_TXT:
                             round(parts);
                             break;
+                        case STATS:
+                            handleStatsCommand(parts);
+                            break;
+                        case LUMA:
+                            handleLumaCommand(parts);
+                            break;
+                        case MATCH:
+                            handleMatchCommand(parts);
+                            break;
+                        case COLOR:
+                            handleColorCommand(parts);
+                            break;
+                        case PARALLEL:
+                            handleParallelCommand(parts);
+                            break;
                         default:
                             System.out.println(INVALID_COMMAND_TRY_AGAIN);
                     }
@@ -99,17 +120,13 @@ public class Shell {
         if (parts.length != THIRD) {
             throw new IllegalArgumentException(ADD_INCORRECT_FORMAT);
         } else if (parts[SECOND].equals(ALL)) {
-            for (int i = ASCII_START; i < ASCII_END; i++) {
-                matcher.addChar((char) i);
-            }
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
         } else if (parts[SECOND].equals(SPACE)) {
             matcher.addChar((char) ASCII_START);
         } else if (parts[SECOND].length() == FOURTH && parts[SECOND].charAt(SECOND) == hyphen) {
             int start = Math.min(parts[SECOND].charAt(FIRST), parts[SECOND].charAt(THIRD));
             int end = Math.max(parts[SECOND].charAt(FIRST), parts[SECOND].charAt(THIRD));
-            for (int i = start; i <= end; i++) {
-                matcher.addChar((char) i);
-            }
+            matcher.addRange((char) start, (char) end);
         } else if (parts[SECOND].length() != SECOND) {
             throw new IllegalArgumentException(ADD_INCORRECT_FORMAT);
         } else {
@@ -124,17 +141,13 @@ public class Shell {
         String command = parts[SECOND];
 
         if (command.equals(ALL)) {
-            for (int i = ASCII_START; i < ASCII_END; i++) {
-                matcher.removeChar((char) i);
-            }
+            matcher.removeRange((char) ASCII_START, (char) (ASCII_END - 1));
         } else if (command.equals(SPACE)) {
             matcher.removeChar((char) ASCII_START);
         } else if (command.length() == FOURTH && command.charAt(SECOND) == hyphen) {
             char start = (char) Math.min(command.charAt(FIRST), command.charAt(THIRD));
             char end = (char) Math.max(command.charAt(FIRST), command.charAt(THIRD));
-            for (char c = start; c <= end; c++) {
-                matcher.removeChar(c);
-            }
+            matcher.removeRange(start, end);
         } else if (command.length() == SECOND) {
             matcher.removeChar(command.charAt(FIRST));
         } else {
@@ -178,14 +191,103 @@ public class Shell {
             throw new IllegalArgumentException(ERROR_CHARSET_TOO_SMALL);
         }
 
-        char[][] asciiArt = algorithm.run();
+        // Rows are written on a separate thread while the next ones are matched
+        try {
+            AsciiRowSink target;
+            if (outputMethod.equals(HTML_OUTPUT)) {
+                target = colorOutput ? new ColorHtmlRowSink(FILE_NAME, DEFAULT_FONT)
+                        : new HtmlRowSink(FILE_NAME, DEFAULT_FONT);
+            } else {
+                target = colorOutput ? new ColorConsoleRowSink() : new ConsoleRowSink();
+            }
+            AsciiRowSink sink = new AsyncRowSink(target);
+            try {
+                algorithm.run(sink, colorOutput);
+            } finally {
+                // Output time is what is left to write once matching is done
+                RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.OUTPUT);
+                sink.close();
+                RenderStats.end(probe);
+            }
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+    }
 
-        if (outputMethod.equals(CONSOLE_OUTPUT)) {
-            new ConsoleAsciiOutput().out(asciiArt);
-        } else if (outputMethod.equals(HTML_OUTPUT)) {
-            new HtmlAsciiOutput(FILE_NAME, DEFAULT_FONT).out(asciiArt);
+    private void handleStatsCommand(String[] parts) {
+        if (parts.length == SECOND) {
+            if (!RenderStats.isEnabled()) {
+                System.out.println(STATS_DISABLED);
+            }
+            RenderStats.print();
+        } else if (parts.length != THIRD) {
+            throw new IllegalArgumentException(STATS_INCORRECT_FORMAT);
+        } else if (parts[SECOND].equals(STATS_ON)) {
+            RenderStats.setEnabled(true);
+        } else if (parts[SECOND].equals(STATS_OFF)) {
+            RenderStats.setEnabled(false);
+        } else if (parts[SECOND].equals(STATS_RESET)) {
+            RenderStats.reset();
         } else {
-            new ConsoleAsciiOutput().out(asciiArt);
+            throw new IllegalArgumentException(STATS_INCORRECT_FORMAT);
+        }
+    }
+
+    private void handleLumaCommand(String[] parts) {
+        if (parts.length != THIRD) {
+            throw new IllegalArgumentException(LUMA_INCORRECT_FORMAT);
+        } else if (parts[SECOND].equals(LUMA_709)) {
+            algorithm.setLuminanceProfile(LuminanceProfile.REC_709);
+        } else if (parts[SECOND].equals(LUMA_601)) {
+            algorithm.setLuminanceProfile(LuminanceProfile.REC_601);
+        } else if (parts[SECOND].equals(LUMA_SRGB)) {
+            algorithm.setLuminanceProfile(LuminanceProfile.SRGB_LINEAR);
+        } else {
+            throw new IllegalArgumentException(LUMA_INCORRECT_FORMAT);
+        }
+    }
+
+    private void handleMatchCommand(String[] parts) {
+        if (parts.length != THIRD) {
+            throw new IllegalArgumentException(MATCH_INCORRECT_FORMAT);
+        } else if (parts[SECOND].equals(MATCH_BRIGHTNESS)) {
+            algorithm.setShapeMatching(false);
+        } else if (parts[SECOND].equals(MATCH_SHAPE)) {
+            algorithm.setShapeMatching(true);
+        } else {
+            throw new IllegalArgumentException(MATCH_INCORRECT_FORMAT);
+        }
+    }
+
+    private void handleColorCommand(String[] parts) {
+        if (parts.length != THIRD) {
+            throw new IllegalArgumentException(COLOR_INCORRECT_FORMAT);
+        } else if (parts[SECOND].equals(COLOR_ON)) {
+            colorOutput = true;
+        } else if (parts[SECOND].equals(COLOR_OFF)) {
+            colorOutput = false;
+        } else {
+            throw new IllegalArgumentException(COLOR_INCORRECT_FORMAT);
+        }
+    }
+
+    private void handleParallelCommand(String[] parts) {
+        if (parts.length != THIRD && parts.length != FOURTH) {
+            throw new IllegalArgumentException(PARALLEL_INCORRECT_FORMAT);
+        }
+        int parallelism;
+        Integer threshold = null;
+        try {
+            parallelism = Integer.parseInt(parts[SECOND]);
+            if (parts.length == FOURTH) {
+                threshold = Integer.parseInt(parts[THIRD]);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(PARALLEL_INCORRECT_FORMAT);
+        }
+        algorithm.setParallelism(parallelism);
+        if (threshold != null) {
+            algorithm.setParallelThreshold(threshold);
         }
     }
 
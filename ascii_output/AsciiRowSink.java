@@ -0,0 +1,44 @@
+package ascii_output;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives ASCII art one row at a time, as soon as each row is rendered,
+ * so the whole char[][] never has to be materialized.
+ * Closing the sink finishes the output.
+ */
+public interface AsciiRowSink extends Closeable {
+
+    /**
+     * Called once before the first row.
+     *
+     * @param numRows the number of rows that will follow.
+     * @param numCols the number of characters in every row.
+     * @throws IOException if writing fails.
+     */
+    void begin(int numRows, int numCols) throws IOException;
+
+    /**
+     * Called for every row, in order. The array may be reused for the next row,
+     * so a sink that keeps it must copy it.
+     *
+     * @param index the row index.
+     * @param row   the characters of the row.
+     * @throws IOException if writing fails.
+     */
+    void row(int index, char[] row) throws IOException;
+
+    /**
+     * Called for every row, in order, when the art is rendered in color. Sinks that
+     * cannot show color ignore the colors. Both arrays may be reused for the next row.
+     *
+     * @param index  the row index.
+     * @param row    the characters of the row.
+     * @param colors the packed RGB color of every character.
+     * @throws IOException if writing fails.
+     */
+    default void row(int index, char[] row, int[] colors) throws IOException {
+        row(index, row);
+    }
+}
@@ -0,0 +1,118 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Hands rows to another sink on a dedicated writer thread, so rendering the next
+ * rows overlaps with writing the previous ones. A bounded queue keeps a slow
+ * output from letting rendered rows pile up.
+ * <p>
+ * If the target sink fails, with an I/O error or any other exception, the writer keeps
+ * taking rows without writing them, so the renderer never blocks, and the failure is
+ * thrown by the next call to {@link #row} or by {@link #close()}.
+ */
+public class AsyncRowSink implements AsciiRowSink {
+
+    private record PendingRow(int index, char[] chars, int[] colors) {
+    }
+
+    private static final PendingRow END = new PendingRow(-1, null, null);
+
+    private final AsciiRowSink target;
+    private final BlockingQueue<PendingRow> queue = new ArrayBlockingQueue<>(ASYNC_SINK_CAPACITY);
+    private Thread writer;
+    private volatile Throwable failure;
+
+    /**
+     * Constructs an AsyncRowSink.
+     *
+     * @param target the sink the rows are written to.
+     */
+    public AsyncRowSink(AsciiRowSink target) {
+        this.target = target;
+    }
+
+    @Override
+    public void begin(int numRows, int numCols) throws IOException {
+        target.begin(numRows, numCols);
+        writer = new Thread(this::drain, ASYNC_SINK_THREAD);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void drain() {
+        try {
+            // After a failure keep taking rows, so the renderer never blocks on a full queue
+            for (PendingRow row = queue.take(); row != END; row = queue.take()) {
+                if (failure == null) {
+                    try {
+                        if (row.colors() == null) {
+                            target.row(row.index(), row.chars());
+                        } else {
+                            target.row(row.index(), row.chars(), row.colors());
+                        }
+                    } catch (IOException | RuntimeException | Error e) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void row(int index, char[] row) throws IOException {
+        checkFailure();
+        enqueue(new PendingRow(index, row.clone(), null));
+    }
+
+    @Override
+    public void row(int index, char[] row, int[] colors) throws IOException {
+        checkFailure();
+        enqueue(new PendingRow(index, row.clone(), colors.clone()));
+    }
+
+    private void enqueue(PendingRow row) throws IOException {
+        try {
+            queue.put(row);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause instanceof IOException e) {
+            throw e;
+        }
+        if (cause instanceof RuntimeException e) {
+            throw e;
+        }
+        if (cause instanceof Error e) {
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writer != null) {
+                enqueue(END);
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            target.close();
+        }
+        checkFailure();
+    }
+}
@@ -0,0 +1,114 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Base of the row sinks writing UTF-8 text through a buffered NIO channel.
+ * Text is encoded straight into a fixed byte buffer that is drained to the
+ * channel whenever it fills up, so a row costs no intermediate strings.
+ */
+public abstract class ChannelRowSink implements AsciiRowSink {
+
+    private final WritableByteChannel channel;
+    private final boolean closeChannel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer buffer;
+    private final CharBuffer single = CharBuffer.allocate(1);
+
+    /**
+     * Constructs a sink writing to the given channel.
+     *
+     * @param channel      the channel to write to.
+     * @param closeChannel whether closing the sink closes the channel.
+     * @param bufferSize   the size of the byte buffer.
+     */
+    protected ChannelRowSink(WritableByteChannel channel, boolean closeChannel, int bufferSize) {
+        this.channel = channel;
+        this.closeChannel = closeChannel;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Writes text to the buffer.
+     *
+     * @param text the text.
+     * @throws IOException if draining the buffer fails.
+     */
+    protected void write(CharSequence text) throws IOException {
+        encode(CharBuffer.wrap(text));
+    }
+
+    /**
+     * Writes characters to the buffer.
+     *
+     * @param chars  the characters.
+     * @param offset the first character to write.
+     * @param length the number of characters to write.
+     * @throws IOException if draining the buffer fails.
+     */
+    protected void write(char[] chars, int offset, int length) throws IOException {
+        encode(CharBuffer.wrap(chars, offset, length));
+    }
+
+    /**
+     * Writes a single character to the buffer.
+     *
+     * @param c the character.
+     * @throws IOException if draining the buffer fails.
+     */
+    protected void write(char c) throws IOException {
+        if (c < ASCII_LIMIT && buffer.hasRemaining()) {
+            buffer.put((byte) c);
+            return;
+        }
+        single.clear();
+        single.put(c).flip();
+        encode(single);
+    }
+
+    private void encode(CharBuffer input) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(input, buffer, false);
+            if (!result.isOverflow()) {
+                return;
+            }
+            drain();
+        }
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Called by {@link #close()} before the buffer is drained, to write any trailer.
+     *
+     * @throws IOException if writing fails.
+     */
+    protected void end() throws IOException {
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            end();
+            drain();
+        } finally {
+            if (closeChannel) {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ascii_output;
+
+import java.io.IOException;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Streams colored ASCII art to the standard output using 24-bit ANSI escapes.
+ * An escape is written only where the color changes, and the default colors are
+ * restored at the end of every row. Rows without colors are written as by
+ * {@link ConsoleRowSink}.
+ */
+public class ColorConsoleRowSink extends ConsoleRowSink {
+
+    @Override
+    public void row(int index, char[] row, int[] colors) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i == 0 || colors[i] != colors[i - 1]) {
+                int color = colors[i];
+                write(ANSI_COLOR_START);
+                write(Integer.toString((color >> RED_SHIFT) & CHANNEL_MASK));
+                write(ANSI_SEPARATOR);
+                write(Integer.toString((color >> GREEN_SHIFT) & CHANNEL_MASK));
+                write(ANSI_SEPARATOR);
+                write(Integer.toString(color & CHANNEL_MASK));
+                write(ANSI_COLOR_END);
+            }
+            write(row[i]);
+            write(' ');
+        }
+        write(ANSI_RESET);
+        write(System.lineSeparator());
+    }
+}
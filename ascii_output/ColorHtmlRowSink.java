@@ -0,0 +1,49 @@
+package ascii_output;
+
+import java.io.IOException;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Streams colored ASCII art into an HTML file. Consecutive characters of the same
+ * color share one span, so uniform areas cost no markup per character.
+ * Rows without colors are written as by {@link HtmlRowSink}.
+ */
+public class ColorHtmlRowSink extends HtmlRowSink {
+
+    private final char[] hex = new char[HTML_COLOR_DIGITS];
+
+    /**
+     * Constructs a ColorHtmlRowSink, creating or truncating the file.
+     *
+     * @param filename the HTML file to write.
+     * @param fontName the font to display the characters with.
+     * @throws IOException if the file cannot be opened.
+     */
+    public ColorHtmlRowSink(String filename, String fontName) throws IOException {
+        super(filename, fontName);
+    }
+
+    @Override
+    public void row(int index, char[] row, int[] colors) throws IOException {
+        for (int start = 0; start < row.length; ) {
+            int color = colors[start];
+            int end = start + 1;
+            while (end < row.length && colors[end] == color) {
+                end++;
+            }
+            write(HTML_COLOR_START);
+            for (int i = HTML_COLOR_DIGITS - 1, value = color; i >= 0; i--, value >>>= HEX_DIGIT_BITS) {
+                hex[i] = Character.forDigit(value & HEX_DIGIT_MASK, HEX_RADIX);
+            }
+            write(hex, FIRST, HTML_COLOR_DIGITS);
+            write(HTML_COLOR_TAG_END);
+            for (int i = start; i < end; i++) {
+                writeEscaped(row[i]);
+            }
+            write(HTML_COLOR_END);
+            start = end;
+        }
+        write(HTML_LINE_BREAK);
+    }
+}
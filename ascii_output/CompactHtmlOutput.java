@@ -0,0 +1,130 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Writes ASCII art into an HTML file with a single channel write.
+ * The exact output size is computed first, so the buffer is allocated once at its
+ * final size, and every character is escaped through a lookup table of its bytes.
+ * Characters outside ASCII are written as numeric references, keeping the file ASCII.
+ * <p>
+ * For ASCII characters and without collapsing, the file is byte for byte what
+ * {@link HtmlRowSink} writes.
+ * With collapsing, runs of spaces that end a row are dropped: the art is shown in a
+ * pre block where they are invisible, and they make up most of the white padding.
+ */
+public class CompactHtmlOutput {
+
+    /**
+     * Bytes written for every ASCII character.
+     */
+    private static final byte[][] ESCAPES = buildEscapes();
+
+    private final String filename;
+    private final String fontName;
+    private final boolean collapseRuns;
+
+    /**
+     * Constructs a CompactHtmlOutput.
+     *
+     * @param filename     the HTML file to write.
+     * @param fontName     the font to display the characters with.
+     * @param collapseRuns whether to drop the runs of spaces ending each row.
+     */
+    public CompactHtmlOutput(String filename, String fontName, boolean collapseRuns) {
+        this.filename = filename;
+        this.fontName = fontName;
+        this.collapseRuns = collapseRuns;
+    }
+
+    private static byte[][] buildEscapes() {
+        byte[][] escapes = new byte[ASCII_LIMIT][];
+        for (int c = 0; c < ASCII_LIMIT; c++) {
+            escapes[c] = new byte[]{(byte) c};
+        }
+        escapes['&'] = HTML_AMP.getBytes(StandardCharsets.US_ASCII);
+        escapes['<'] = HTML_LT.getBytes(StandardCharsets.US_ASCII);
+        escapes['>'] = HTML_GT.getBytes(StandardCharsets.US_ASCII);
+        return escapes;
+    }
+
+    /**
+     * Writes the ASCII art, replacing the file.
+     *
+     * @param chars the ASCII art.
+     * @return the number of bytes written.
+     * @throws IOException if writing fails.
+     */
+    public long out(char[][] chars) throws IOException {
+        byte[] header = String.format(HTML_HEADER, fontName).getBytes(StandardCharsets.UTF_8);
+        byte[] footer = HTML_FOOTER.getBytes(StandardCharsets.UTF_8);
+        byte[] lineBreak = HTML_LINE_BREAK.getBytes(StandardCharsets.UTF_8);
+
+        int[] rowEnds = new int[chars.length];
+        long size = header.length + footer.length + (long) lineBreak.length * chars.length;
+        for (int i = 0; i < chars.length; i++) {
+            rowEnds[i] = collapseRuns ? trimmedLength(chars[i]) : chars[i].length;
+            for (int j = 0; j < rowEnds[i]; j++) {
+                size += encodedLength(chars[i][j]);
+            }
+        }
+
+        byte[] bytes = new byte[Math.toIntExact(size)];
+        int position = copy(header, bytes, 0);
+        for (int i = 0; i < chars.length; i++) {
+            char[] row = chars[i];
+            for (int j = 0; j < rowEnds[i]; j++) {
+                char c = row[j];
+                if (c < ASCII_LIMIT) {
+                    byte[] escape = ESCAPES[c];
+                    if (escape.length == 1) {
+                        bytes[position++] = escape[FIRST];
+                    } else {
+                        position = copy(escape, bytes, position);
+                    }
+                } else {
+                    position = copy(numericReference(c), bytes, position);
+                }
+            }
+            position = copy(lineBreak, bytes, position);
+        }
+        copy(footer, bytes, position);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        return size;
+    }
+
+    private static int copy(byte[] source, byte[] dest, int position) {
+        System.arraycopy(source, 0, dest, position, source.length);
+        return position + source.length;
+    }
+
+    private static int trimmedLength(char[] row) {
+        int end = row.length;
+        while (end > 0 && row[end - 1] == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int encodedLength(char c) {
+        return c < ASCII_LIMIT ? ESCAPES[c].length : numericReference(c).length;
+    }
+
+    private static byte[] numericReference(char c) {
+        return (HTML_REFERENCE_START + (int) c + HTML_REFERENCE_END).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,45 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Streams ASCII art to the standard output, each character followed by a space
+ * to make up for characters being taller than they are wide.
+ */
+public class ConsoleRowSink extends ChannelRowSink {
+
+    /**
+     * Constructs a ConsoleRowSink.
+     */
+    public ConsoleRowSink() {
+        super(Channels.newChannel(System.out), false, OUTPUT_BUFFER_SIZE);
+        System.out.flush();
+    }
+
+    /**
+     * Constructs a ConsoleRowSink writing the console format to another channel,
+     * such as a network response. The channel is not closed.
+     *
+     * @param channel the channel to write to.
+     */
+    public ConsoleRowSink(WritableByteChannel channel) {
+        super(channel, false, OUTPUT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void begin(int numRows, int numCols) {
+    }
+
+    @Override
+    public void row(int index, char[] row) throws IOException {
+        for (char c : row) {
+            write(c);
+            write(' ');
+        }
+        write(System.lineSeparator());
+    }
+}
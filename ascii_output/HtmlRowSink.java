@@ -0,0 +1,82 @@
+package ascii_output;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Streams ASCII art into an HTML file through a file channel, row by row.
+ */
+public class HtmlRowSink extends ChannelRowSink {
+
+    private final String fontName;
+
+    /**
+     * Constructs an HtmlRowSink, creating or truncating the file.
+     *
+     * @param filename the HTML file to write.
+     * @param fontName the font to display the characters with.
+     * @throws IOException if the file cannot be opened.
+     */
+    public HtmlRowSink(String filename, String fontName) throws IOException {
+        super(FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), true, OUTPUT_BUFFER_SIZE);
+        this.fontName = fontName;
+    }
+
+    /**
+     * Constructs an HtmlRowSink writing to another channel, such as a network response.
+     * The channel is not closed.
+     *
+     * @param channel  the channel to write to.
+     * @param fontName the font to display the characters with.
+     */
+    public HtmlRowSink(WritableByteChannel channel, String fontName) {
+        super(channel, false, OUTPUT_BUFFER_SIZE);
+        this.fontName = fontName;
+    }
+
+    @Override
+    public void begin(int numRows, int numCols) throws IOException {
+        write(String.format(HTML_HEADER, fontName));
+    }
+
+    @Override
+    public void row(int index, char[] row) throws IOException {
+        for (char c : row) {
+            writeEscaped(c);
+        }
+        write(HTML_LINE_BREAK);
+    }
+
+    /**
+     * Writes a character, escaping it if HTML requires.
+     *
+     * @param c the character.
+     * @throws IOException if draining the buffer fails.
+     */
+    protected void writeEscaped(char c) throws IOException {
+        switch (c) {
+            case '&':
+                write(HTML_AMP);
+                break;
+            case '<':
+                write(HTML_LT);
+                break;
+            case '>':
+                write(HTML_GT);
+                break;
+            default:
+                write(c);
+        }
+    }
+
+    @Override
+    protected void end() throws IOException {
+        write(HTML_FOOTER);
+    }
+}
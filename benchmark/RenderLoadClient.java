@@ -0,0 +1,104 @@
+package benchmark;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Load client for the render server. Uploads the same image a number of times with a
+ * fixed number of requests in flight, each from its own virtual thread, and prints the
+ * throughput, the number of requests rejected with 503 and the latency percentiles.
+ * <p>
+ * Since every upload is the same, all requests after the first are answered from the
+ * server's render cache; a trailing {@code off} adds {@code cache=off} to the url so
+ * every request is rendered.
+ * <p>
+ * Usage: {@code RenderLoadClient <url> <image> <requests> <concurrency> [off]}, for example
+ * {@code RenderLoadClient "http://localhost:8080/render?res=128&chars=all" photo.jpg 1000 32 off}.
+ */
+public class RenderLoadClient {
+
+    private RenderLoadClient() {
+    }
+
+    /**
+     * Main entry point of the load client.
+     * @param args the url, the image, the number of requests, the concurrency and
+     *             optionally off to bypass the render cache.
+     * @throws Exception if the image cannot be read or the client is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < FOURTH + 1 || args.length > FOURTH + 2
+                || (args.length > FOURTH + 1 && !args[FOURTH + 1].equals(CACHE_OFF))) {
+            System.out.println(LOAD_CLIENT_USAGE);
+            return;
+        }
+        String url = args[FIRST];
+        if (args.length > FOURTH + 1) {
+            url += (url.indexOf(QUERY_START) < 0 ? QUERY_START : QUERY_SEPARATOR) + PARAM_CACHE
+                    + QUERY_ASSIGNMENT + CACHE_OFF;
+        }
+        URI uri = URI.create(url);
+        byte[] image = Files.readAllBytes(Paths.get(args[SECOND]));
+        int requests = Integer.parseInt(args[THIRD]);
+        int concurrency = Integer.parseInt(args[FOURTH]);
+        Semaphore inFlight = new Semaphore(concurrency);
+        long[] latencies = new long[requests];
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(executor).build()) {
+            for (int i = 0; i < requests; i++) {
+                int index = i;
+                inFlight.acquire();
+                executor.submit(() -> {
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(uri)
+                                .POST(HttpRequest.BodyPublishers.ofByteArray(image)).build(),
+                                HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() == HTTP_UNAVAILABLE) {
+                            rejected.incrementAndGet();
+                        } else if (response.statusCode() != HTTP_OK) {
+                            failed.incrementAndGet();
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        latencies[index] = System.nanoTime() - sent;
+                        inFlight.release();
+                    }
+                });
+            }
+            // Wait for the last requests before the client is closed
+            inFlight.acquire(concurrency);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        double seconds = elapsed / NANOS_PER_SECOND;
+        System.out.println(String.format(Locale.ROOT, LOAD_CLIENT_SUMMARY, requests, seconds,
+                requests / seconds, rejected.get(), failed.get(),
+                percentile(latencies, P50) / NANOS_PER_MILLI,
+                percentile(latencies, P99) / NANOS_PER_MILLI,
+                latencies[requests - 1] / NANOS_PER_MILLI));
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))];
+    }
+}
@@ -1,23 +1,65 @@
 package image;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import ascii_art.RenderStats;
+
 import static ascii_art.Constants.*;
 
 /**
- * A class to represent and manipulate an image using a 2D pixel array.
+ * A class to represent and manipulate an image using a packed pixel raster.
+ * Every pixel is stored as a single packed RGB int in a flat row-major array,
+ * so no per-pixel objects are allocated. Padding is virtual: the raster keeps
+ * its source size and reads outside it return white.
  * Provides functionality for loading an image, padding it to a power of 2,
  * and dividing it into smaller sub-images.
  */
 public class Image {
 
-    private Color[][] pixelArray;
+    private int[] pixels;
     private int width;
     private int height;
 
+    /**
+     * Dimensions of the stored raster, which are the image dimensions before padding.
+     */
+    private int sourceWidth;
+    private int sourceHeight;
+
+    /**
+     * Position of the stored raster inside the padded image.
+     */
+    private int xOffset;
+    private int yOffset;
+
+    /**
+     * Summed-area table of the stored raster's luminance,
+     * (sourceHeight + 1) x (sourceWidth + 1), row-major.
+     * Built lazily on the first brightness query; padding never changes it.
+     * Volatile so that concurrent readers never observe a partially built table.
+     */
+    private volatile long[] luminanceTable;
+    private volatile LuminanceProfile profile = LuminanceProfile.REC_709;
+
+    /**
+     * The kernel running the per-pixel loops, shared by all images.
+     */
+    private static volatile PixelKernel kernel = createKernel(Boolean.getBoolean(VECTOR_PROPERTY));
+
 
     /**
      * Constructs an Image object from a 2D array of colors and specified width and height.
@@ -27,9 +69,35 @@ public class Image {
      * @param height     the height of the image.
      */
     public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
         this.width = width;
         this.height = height;
+        this.sourceWidth = width;
+        this.sourceHeight = height;
+        this.pixels = new int[width * height];
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                pixels[i * width + j] = pixelArray[i][j].getRGB() & RGB_MASK;
+            }
+        }
+    }
+
+    /**
+     * Constructs an Image object from a packed row-major RGB array.
+     * The array is used as is and is not copied.
+     *
+     * @param pixels packed RGB values, row after row.
+     * @param width  the width of the image.
+     * @param height the height of the image.
+     */
+    public Image(int[] pixels, int width, int height) {
+        if (pixels.length != width * height) {
+            throw new IllegalArgumentException(RASTER_SIZE_MISMATCH);
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+        this.sourceWidth = width;
+        this.sourceHeight = height;
     }
 
     /**
@@ -39,16 +107,125 @@ public class Image {
      * @throws IOException if the file cannot be read.
      */
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
+        this(filename, NO_SUBSAMPLING);
+    }
+
+    /**
+     * Constructs an Image object by loading an image from the given filename, keeping
+     * only every subsampling-th pixel in each direction. The decoder skips the other
+     * pixels, so a coarse render of a large file reads a fraction of the data.
+     *
+     * @param filename    the path to the image file.
+     * @param subsampling the distance between kept pixels, 1 for full resolution.
+     * @throws IOException if the file cannot be read.
+     */
+    public Image(String filename, int subsampling) throws IOException {
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.DECODE);
+        BufferedImage im = read(new File(filename), filename, subsampling);
         width = im.getWidth();
         height = im.getHeight();
+        sourceWidth = width;
+        sourceHeight = height;
+        pixels = toPackedRGB(im);
+        RenderStats.end(probe);
+    }
 
-        pixelArray = new Color[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                pixelArray[i][j] = new Color(im.getRGB(j, i));
+    /**
+     * Constructs an Image object by decoding an image file already read into memory,
+     * such as an upload, or a file whose bytes were hashed first.
+     *
+     * @param encoded the bytes of the image file.
+     * @param name    the name of the image in error messages.
+     * @throws IOException if no image reader can decode the bytes.
+     */
+    public Image(byte[] encoded, String name) throws IOException {
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.DECODE);
+        BufferedImage im = read(new ByteArrayInputStream(encoded), name, NO_SUBSAMPLING);
+        width = im.getWidth();
+        height = im.getHeight();
+        sourceWidth = width;
+        sourceHeight = height;
+        pixels = toPackedRGB(im);
+        RenderStats.end(probe);
+    }
+
+    /**
+     * Constructs an Image object from an already decoded image, such as a frame
+     * of an animation.
+     *
+     * @param im the decoded image.
+     */
+    public Image(BufferedImage im) {
+        width = im.getWidth();
+        height = im.getHeight();
+        sourceWidth = width;
+        sourceHeight = height;
+        pixels = toPackedRGB(im);
+    }
+
+    private static BufferedImage read(Object source, String name, int subsampling) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException(UNSUPPORTED_IMAGE + name);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > NO_SUBSAMPLING) {
+                    param.setSourceSubsampling(subsampling, subsampling, FIRST, FIRST);
+                }
+                return reader.read(FIRST, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of a decoded image into a packed RGB array. The common layouts
+     * produced by the PNG and JPEG decoders are read straight from the data buffer,
+     * anything else goes through the array form of getRGB, one scanline at a time.
+     */
+    private static int[] toPackedRGB(BufferedImage im) {
+        int w = im.getWidth();
+        int h = im.getHeight();
+        int[] packed = new int[w * h];
+        Raster raster = im.getRaster();
+        boolean plainLayout = raster.getParent() == null
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1 && raster.getDataBuffer().getOffset() == 0;
+
+        if (plainLayout && (im.getType() == BufferedImage.TYPE_INT_RGB
+                || im.getType() == BufferedImage.TYPE_INT_ARGB)
+                && ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == w) {
+            int[] data = ((DataBufferInt) raster.getDataBuffer()).getData();
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = data[i] & RGB_MASK;
+            }
+        } else if (plainLayout && (im.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || im.getType() == BufferedImage.TYPE_4BYTE_ABGR)
+                && ((ComponentSampleModel) raster.getSampleModel()).getScanlineStride()
+                == w * ((ComponentSampleModel) raster.getSampleModel()).getPixelStride()) {
+            byte[] data = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int pixelStride = ((ComponentSampleModel) raster.getSampleModel()).getPixelStride();
+            // Channels are stored as [A] B G R, so red is always the last byte of a pixel
+            int blue = pixelStride - BGR_CHANNELS;
+            for (int i = 0, offset = blue; i < packed.length; i++, offset += pixelStride) {
+                packed[i] = ((data[offset + 2] & CHANNEL_MASK) << RED_SHIFT)
+                        | ((data[offset + 1] & CHANNEL_MASK) << GREEN_SHIFT)
+                        | (data[offset] & CHANNEL_MASK);
+            }
+        } else {
+            for (int i = 0; i < h; i++) {
+                im.getRGB(FIRST, i, w, 1, packed, i * w, w);
+            }
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] &= RGB_MASK;
             }
         }
+        return packed;
     }
 
     /**
@@ -71,13 +248,417 @@ public class Image {
 
     /**
      * Returns the color of the pixel at the specified coordinates.
+     * Allocates a new Color; hot paths should use {@link #getRGB(int, int)}.
      *
      * @param x the x-coordinate of the pixel.
      * @param y the y-coordinate of the pixel.
      * @return the Color of the specified pixel.
      */
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(getRGB(x, y));
+    }
+
+    /**
+     * Returns the packed RGB value of the pixel at the specified coordinates.
+     *
+     * @param x the x-coordinate (row) of the pixel.
+     * @param y the y-coordinate (column) of the pixel.
+     * @return the packed 0xRRGGBB value of the pixel.
+     */
+    public int getRGB(int x, int y) {
+        int row = x - yOffset;
+        int col = y - xOffset;
+        if (row < 0 || row >= sourceHeight || col < 0 || col >= sourceWidth) {
+            return WHITE_RGB;
+        }
+        return pixels[row * sourceWidth + col];
+    }
+
+    /**
+     * Copies a run of packed RGB values from a single row into the given buffer.
+     *
+     * @param row    the row to read.
+     * @param col    the first column to read.
+     * @param length the number of pixels to read.
+     * @param dest   the buffer to write into, starting at index 0.
+     * @return the given buffer.
+     */
+    public int[] getRow(int row, int col, int length, int[] dest) {
+        int sourceRow = row - yOffset;
+        if (sourceRow < 0 || sourceRow >= sourceHeight) {
+            Arrays.fill(dest, FIRST, length, WHITE_RGB);
+            return dest;
+        }
+        // Split the run into padding before the raster, raster pixels and padding after it
+        int start = Math.min(length, Math.max(0, xOffset - col));
+        int end = Math.max(start, Math.min(length, xOffset + sourceWidth - col));
+        Arrays.fill(dest, FIRST, start, WHITE_RGB);
+        if (end > start) {
+            System.arraycopy(pixels, sourceRow * sourceWidth + col + start - xOffset,
+                    dest, start, end - start);
+        }
+        Arrays.fill(dest, end, length, WHITE_RGB);
+        return dest;
+    }
+
+    /**
+     * Copies a whole row of packed RGB values into the given buffer.
+     *
+     * @param row  the row to read.
+     * @param dest a buffer of at least {@link #getWidth()} elements.
+     * @return the given buffer.
+     */
+    public int[] getRow(int row, int[] dest) {
+        return getRow(row, FIRST, width, dest);
+    }
+
+    /**
+     * Returns the mean brightness of a square region, in the range [0, 1].
+     * Uses the luminance summed-area table, so the cost is four lookups
+     * regardless of the region size.
+     *
+     * @param top  the first row of the region.
+     * @param left the first column of the region.
+     * @param size the side length of the region.
+     * @return the mean brightness of the region.
+     */
+    public double getAverageBrightness(int top, int left, int size) {
+        return toBrightness(getLuminanceSum(top, left, size), size);
+    }
+
+    /**
+     * Returns the exact sum of the scaled luminance of a square region,
+     * as computed by the image's {@link LuminanceProfile}. Sums of adjacent regions
+     * can be added without any rounding.
+     *
+     * @param top  the first row of the region.
+     * @param left the first column of the region.
+     * @param size the side length of the region.
+     * @return the scaled luminance sum of the region.
+     */
+    public long getLuminanceSum(int top, int left, int size) {
+        long pixelCount = (long) size * size;
+        // Clip the region to the stored raster, the rest of it is white padding
+        int firstRow = Math.max(0, Math.min(sourceHeight, top - yOffset));
+        int endRow = Math.max(0, Math.min(sourceHeight, top + size - yOffset));
+        int firstCol = Math.max(0, Math.min(sourceWidth, left - xOffset));
+        int endCol = Math.max(0, Math.min(sourceWidth, left + size - xOffset));
+        if (firstRow == endRow || firstCol == endCol) {
+            return pixelCount * WHITE_LUMINANCE;
+        }
+
+        long[] table = getLuminanceTable();
+        int stride = sourceWidth + 1;
+        long sum = table[endRow * stride + endCol] - table[firstRow * stride + endCol]
+                - table[endRow * stride + firstCol] + table[firstRow * stride + firstCol];
+        long paddingPixels = pixelCount - (long) (endRow - firstRow) * (endCol - firstCol);
+        return sum + paddingPixels * WHITE_LUMINANCE;
+    }
+
+    /**
+     * Returns the same sum as {@link #getLuminanceSum(int, int, int)} by reading the pixels
+     * of the region directly, without building the summed-area table. It suits an image
+     * of which only a few regions are ever read, such as a frame differing from the
+     * previous one in a few places.
+     *
+     * @param top  the first row of the region.
+     * @param left the first column of the region.
+     * @param size the side length of the region.
+     * @return the scaled luminance sum of the region.
+     */
+    public long scanLuminanceSum(int top, int left, int size) {
+        long pixelCount = (long) size * size;
+        int firstRow = Math.max(0, Math.min(sourceHeight, top - yOffset));
+        int endRow = Math.max(0, Math.min(sourceHeight, top + size - yOffset));
+        int firstCol = Math.max(0, Math.min(sourceWidth, left - xOffset));
+        int endCol = Math.max(0, Math.min(sourceWidth, left + size - xOffset));
+        long paddingPixels = pixelCount - (long) (endRow - firstRow) * (endCol - firstCol);
+        long sum = paddingPixels * WHITE_LUMINANCE;
+        if (firstCol == endCol) {
+            return sum;
+        }
+
+        int[] rowLuminance = new int[endCol - firstCol];
+        PixelKernel pixelKernel = kernel;
+        for (int i = firstRow; i < endRow; i++) {
+            pixelKernel.luminance(pixels, i * sourceWidth + firstCol, rowLuminance.length, rowLuminance, profile);
+            for (int luminance : rowLuminance) {
+                sum += luminance;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Returns whether a square region holds the same pixels in this image and in another
+     * one. Images of different sizes or padding never compare equal. Only the stored
+     * pixels of the region are compared, the padding being white in both.
+     *
+     * @param other the other image.
+     * @param top   the first row of the region.
+     * @param left  the first column of the region.
+     * @param size  the side length of the region.
+     * @return whether the region is identical in both images.
+     */
+    public boolean sameRegion(Image other, int top, int left, int size) {
+        if (other.sourceWidth != sourceWidth || other.sourceHeight != sourceHeight
+                || other.xOffset != xOffset || other.yOffset != yOffset) {
+            return false;
+        }
+        int firstRow = Math.max(0, Math.min(sourceHeight, top - yOffset));
+        int endRow = Math.max(0, Math.min(sourceHeight, top + size - yOffset));
+        int firstCol = Math.max(0, Math.min(sourceWidth, left - xOffset));
+        int endCol = Math.max(0, Math.min(sourceWidth, left + size - xOffset));
+        for (int i = firstRow; i < endRow; i++) {
+            int from = i * sourceWidth + firstCol;
+            int to = i * sourceWidth + endCol;
+            if (!Arrays.equals(pixels, from, to, other.pixels, from, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts a scaled luminance sum of a square region to its mean brightness.
+     *
+     * @param luminanceSum the sum, as returned by {@link #getLuminanceSum(int, int, int)}.
+     * @param size         the side length of the region.
+     * @return the mean brightness, in the range [0, 1].
+     */
+    public static double toBrightness(long luminanceSum, int size) {
+        return luminanceSum / (LUMA_SCALE * RGB_CONSTANT * size * size);
+    }
+
+    /**
+     * Sums the red, green and blue channels of a square region in a single pass over
+     * the raster, counting padding pixels as white. For weighted sum profiles the
+     * luminance sum of the region follows from the channel sums through
+     * {@link LuminanceProfile#luminanceOf(long, long, long)}, so one reduction gives
+     * both the mean color and the brightness.
+     *
+     * @param top  the first row of the region.
+     * @param left the first column of the region.
+     * @param size the side length of the region.
+     * @param sums receives the red, green and blue sums, in this order.
+     */
+    public void getChannelSums(int top, int left, int size, long[] sums) {
+        long pixelCount = (long) size * size;
+        int firstRow = Math.max(0, Math.min(sourceHeight, top - yOffset));
+        int endRow = Math.max(0, Math.min(sourceHeight, top + size - yOffset));
+        int firstCol = Math.max(0, Math.min(sourceWidth, left - xOffset));
+        int endCol = Math.max(0, Math.min(sourceWidth, left + size - xOffset));
+
+        long paddingPixels = pixelCount - (long) (endRow - firstRow) * (endCol - firstCol);
+        sums[FIRST] = paddingPixels * CHANNEL_MASK;
+        sums[SECOND] = paddingPixels * CHANNEL_MASK;
+        sums[THIRD] = paddingPixels * CHANNEL_MASK;
+        if (firstCol == endCol) {
+            return;
+        }
+        PixelKernel pixelKernel = kernel;
+        for (int i = firstRow; i < endRow; i++) {
+            pixelKernel.addChannels(pixels, i * sourceWidth + firstCol, endCol - firstCol, sums);
+        }
+    }
+
+    /**
+     * Thresholds a square region into a shape mask of {@code DEFAULT_BOOL_ARRAY_SIZE}
+     * by {@code DEFAULT_BOOL_ARRAY_SIZE} cells, row by row, one bit per cell. A bit is set
+     * where the cell is at least half as bright as white, matching the white pixels of a glyph.
+     * When the region divides evenly into cells each cell is averaged through the
+     * luminance summed-area table, otherwise the pixel under the cell is sampled.
+     *
+     * @param top  the first row of the region.
+     * @param left the first column of the region.
+     * @param size the side length of the region.
+     * @param mask receives the {@code MASK_WORDS} words of the mask.
+     */
+    public void getShapeMask(int top, int left, int size, long[] mask) {
+        Arrays.fill(mask, FIRST, MASK_WORDS, 0L);
+        int cellSize = size / DEFAULT_BOOL_ARRAY_SIZE;
+        boolean averaged = cellSize > 0 && size % DEFAULT_BOOL_ARRAY_SIZE == 0;
+        long threshold = SHAPE_THRESHOLD * cellSize * cellSize;
+        int sourceTop = top - yOffset;
+        int sourceLeft = left - xOffset;
+        if (averaged && sourceTop >= 0 && sourceLeft >= 0
+                && sourceTop + size <= sourceHeight && sourceLeft + size <= sourceWidth) {
+            // The region holds no padding, so cells are read straight from the table
+            long[] table = getLuminanceTable();
+            int stride = sourceWidth + 1;
+            int rowStep = cellSize * stride;
+            for (int row = 0, upper = sourceTop * stride + sourceLeft; row < DEFAULT_BOOL_ARRAY_SIZE;
+                 row++, upper += rowStep) {
+                int lower = upper + rowStep;
+                for (int col = 0, cell = row * DEFAULT_BOOL_ARRAY_SIZE; col < DEFAULT_BOOL_ARRAY_SIZE;
+                     col++, cell++) {
+                    int x0 = col * cellSize;
+                    int x1 = x0 + cellSize;
+                    long sum = table[lower + x1] - table[upper + x1] - table[lower + x0] + table[upper + x0];
+                    if (sum >= threshold) {
+                        mask[cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+                    }
+                }
+            }
+            return;
+        }
+        if (averaged) {
+            for (int row = 0; row < DEFAULT_BOOL_ARRAY_SIZE; row++) {
+                for (int col = 0; col < DEFAULT_BOOL_ARRAY_SIZE; col++) {
+                    if (getLuminanceSum(top + row * cellSize, left + col * cellSize, cellSize) >= threshold) {
+                        int cell = row * DEFAULT_BOOL_ARRAY_SIZE + col;
+                        mask[cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+                    }
+                }
+            }
+            return;
+        }
+        // Cells of a small region share pixels, so each sampled pixel and row is read once
+        int previousRow = -1;
+        long rowBits = 0;
+        for (int row = 0; row < DEFAULT_BOOL_ARRAY_SIZE; row++) {
+            int sourceRow = top + row * size / DEFAULT_BOOL_ARRAY_SIZE;
+            if (sourceRow != previousRow) {
+                rowBits = 0;
+                int previousCol = -1;
+                boolean white = false;
+                for (int col = 0; col < DEFAULT_BOOL_ARRAY_SIZE; col++) {
+                    int sourceCol = left + col * size / DEFAULT_BOOL_ARRAY_SIZE;
+                    if (sourceCol != previousCol) {
+                        white = profile.luminance(getRGB(sourceRow, sourceCol)) >= SHAPE_THRESHOLD;
+                        previousCol = sourceCol;
+                    }
+                    if (white) {
+                        rowBits |= 1L << col;
+                    }
+                }
+                previousRow = sourceRow;
+            }
+            int cell = row * DEFAULT_BOOL_ARRAY_SIZE;
+            mask[cell / Long.SIZE] |= rowBits << (cell % Long.SIZE);
+        }
+    }
+
+    /**
+     * Converts the channel sums of a square region to its mean packed RGB color.
+     *
+     * @param red   the red sum of the region.
+     * @param green the green sum of the region.
+     * @param blue  the blue sum of the region.
+     * @param size  the side length of the region.
+     * @return the packed 0xRRGGBB mean color, each channel rounded to the nearest value.
+     */
+    public static int toMeanRGB(long red, long green, long blue, int size) {
+        long pixelCount = (long) size * size;
+        long half = pixelCount / 2;
+        return (int) ((red + half) / pixelCount) << RED_SHIFT
+                | (int) ((green + half) / pixelCount) << GREEN_SHIFT
+                | (int) ((blue + half) / pixelCount);
+    }
+
+    /**
+     * Returns the profile weighing the channels of a pixel into its luminance.
+     *
+     * @return the luminance profile.
+     */
+    public LuminanceProfile getLuminanceProfile() {
+        return profile;
+    }
+
+    /**
+     * Sets the profile weighing the channels of a pixel into its luminance.
+     * The luminance table is rebuilt on the next lookup. Luminance values are integers
+     * in every profile, so summed-area table lookups stay exact and uniform regions
+     * average to exactly their pixel value.
+     *
+     * @param profile the luminance profile.
+     */
+    public synchronized void setLuminanceProfile(LuminanceProfile profile) {
+        if (profile != this.profile) {
+            this.profile = profile;
+            luminanceTable = null;
+        }
+    }
+
+    private long[] getLuminanceTable() {
+        long[] table = luminanceTable;
+        if (table == null) {
+            synchronized (this) {
+                table = luminanceTable;
+                if (table == null) {
+                    RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.LUMINANCE_TABLE);
+                    table = buildLuminanceTable();
+                    luminanceTable = table;
+                    RenderStats.end(probe);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Builds the luminance summed-area table in a single pass over the raster.
+     * The luminance of a whole row is computed by the kernel before it is summed up.
+     */
+    private long[] buildLuminanceTable() {
+        int stride = sourceWidth + 1;
+        long[] table = new long[stride * (sourceHeight + 1)];
+        int[] rowLuminance = new int[sourceWidth];
+        PixelKernel pixelKernel = kernel;
+        for (int i = 0; i < sourceHeight; i++) {
+            pixelKernel.luminance(pixels, i * sourceWidth, sourceWidth, rowLuminance, profile);
+            long rowSum = 0;
+            int above = i * stride;
+            int current = above + stride;
+            for (int j = 0; j < sourceWidth; j++) {
+                rowSum += rowLuminance[j];
+                table[current + j + 1] = table[above + j + 1] + rowSum;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Switches the per-pixel loops of all images between the vectorized kernel and the
+     * scalar one. Both compute on integers, so the results are identical: the tolerance
+     * between the two paths is zero. The vectorized kernel needs the
+     * {@code jdk.incubator.vector} module (run with {@code --add-modules jdk.incubator.vector})
+     * and the classes compiled from the {@code vector} directory; without either the scalar
+     * kernel stays in use. The initial choice is taken from the
+     * {@code ascii_art.vector} system property.
+     *
+     * @param enabled whether to use the vectorized kernel.
+     * @return whether the vectorized kernel is now in use.
+     */
+    public static boolean setVectorKernel(boolean enabled) {
+        PixelKernel chosen = createKernel(enabled);
+        kernel = chosen;
+        return !(chosen instanceof ScalarPixelKernel);
+    }
+
+    /**
+     * Returns whether the per-pixel loops use the vectorized kernel.
+     *
+     * @return true if the vectorized kernel is in use.
+     */
+    public static boolean isVectorKernel() {
+        return !(kernel instanceof ScalarPixelKernel);
+    }
+
+    /**
+     * Creates the vectorized kernel if asked for and available, the scalar one otherwise.
+     * The vectorized kernel is compiled separately, against the incubator module, and
+     * loaded by name, so the rest of the code builds and runs without that module.
+     */
+    private static PixelKernel createKernel(boolean vectorized) {
+        if (vectorized && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+            try {
+                return (PixelKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // The vectorized kernel is not part of this build
+            }
+        }
+        return new ScalarPixelKernel();
     }
 
     /**
@@ -89,11 +670,10 @@ public class Image {
         // Create a BufferedImage object
         BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-        // Populate the BufferedImage with pixel data
+        // Populate the BufferedImage with whole rows of pixel data, padding included
+        int[] row = new int[width];
         for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                bufferedImage.setRGB(j, i, pixelArray[i][j].getRGB());
-            }
+            bufferedImage.setRGB(FIRST, i, width, 1, getRow(i, row), FIRST, width);
         }
 
         // Extract file extension from the filename
@@ -105,7 +685,8 @@ public class Image {
     }
     /**
      * Pads the image to the nearest power of 2 for both width and height.
-     * The padded area is filled with white pixels (RGB: 255, 255, 255).
+     * The padded area reads as white pixels (RGB: 255, 255, 255). The padding is
+     * virtual: the raster is not copied and no padding pixels are stored.
      */
     public void padImage() {
         int newWidth = nextPowerOfTwo(width);
@@ -115,56 +696,63 @@ public class Image {
             return; // Already a power of 2, no padding needed
         }
 
-        Color[][] paddedArray = new Color[newHeight][newWidth];
-
-        // Fill the padded array with white pixels
-        for (int i = 0; i < newHeight; i++) {
-            for (int j = 0; j < newWidth; j++) {
-                paddedArray[i][j] = new Color((int)RGB_CONSTANT, (int)RGB_CONSTANT, (int)RGB_CONSTANT); // Default white padding
-            }
-        }
-
-        int yOffset = (newHeight - height) / 2; // Vertical offset
-        int xOffset = (newWidth - width) / 2;  // Horizontal offset
-
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                paddedArray[i + yOffset][j + xOffset] = pixelArray[i][j];
-            }
-        }
-
-        this.pixelArray = paddedArray;
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.PADDING);
+        yOffset += (newHeight - height) / 2; // Vertical offset
+        xOffset += (newWidth - width) / 2;  // Horizontal offset
         this.width = newWidth;
         this.height = newHeight;
+        RenderStats.end(probe);
     }
 
     /**
      * Divides the image into smaller sub-images of a specified size.
-     * Each sub-image is a square of size subImageSize x subImageSize.
+     * Each sub-image is a square of size subImageSize x subImageSize,
+     * exposed as a view over this image's raster without copying pixels.
      * Assumes the image dimensions are multiples of subImageSize.
      *
      * @param subImageSize the size of each sub-image (in pixels).
-     * @return a 3D array of Color objects representing the sub-images.
+     * @return the sub-images, row by row.
      */
-    public Color[][][] divideIntoSubImages(int subImageSize) {
-        int numRows = height / subImageSize;
+    public SubImage[] divideIntoSubImages(int subImageSize) {
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.TILE_SPLIT);
         int numCols = width / subImageSize;
+        SubImage[] subImages = new SubImage[(height / subImageSize) * numCols];
+        forEachSubImage(subImageSize, (row, col, top, left, size) ->
+                subImages[row * numCols + col] = new SubImage(this, top, left, size));
+        RenderStats.end(probe);
+        return subImages;
+    }
+
+    /**
+     * Walks the sub-images of a specified size, row by row, without
+     * allocating anything per sub-image.
+     * Assumes the image dimensions are multiples of subImageSize.
+     *
+     * @param subImageSize the size of each sub-image (in pixels).
+     * @param visitor      the callback invoked for every sub-image.
+     */
+    public void forEachSubImage(int subImageSize, SubImageVisitor visitor) {
+        forEachSubImage(subImageSize, FIRST, height / subImageSize, visitor);
+    }
 
-        Color[][][] subImages = new Color[numRows * numCols][subImageSize][subImageSize];
+    /**
+     * Walks the sub-images of a range of grid rows, row by row, without
+     * allocating anything per sub-image.
+     *
+     * @param subImageSize the size of each sub-image (in pixels).
+     * @param firstRow     the first grid row to visit.
+     * @param endRow       the grid row to stop before.
+     * @param visitor      the callback invoked for every sub-image.
+     */
+    public void forEachSubImage(int subImageSize, int firstRow, int endRow,
+                                SubImageVisitor visitor) {
+        int numCols = width / subImageSize;
 
-        for (int row = 0; row < numRows; row++) {
+        for (int row = firstRow; row < endRow; row++) {
             for (int col = 0; col < numCols; col++) {
-                Color[][] subImage = new Color[subImageSize][subImageSize];
-
-                for (int i = 0; i < subImageSize; i++) {
-                    for (int j = 0; j < subImageSize; j++) {
-                        subImage[i][j] = pixelArray[row * subImageSize + i][col * subImageSize + j];
-                    }
-                }
-                subImages[row * numCols + col] = subImage;
+                visitor.visit(row, col, row * subImageSize, col * subImageSize, subImageSize);
             }
         }
-        return subImages;
     }
 
     /**
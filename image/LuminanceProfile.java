@@ -0,0 +1,126 @@
+package image;
+
+import static ascii_art.Constants.*;
+
+/**
+ * Ways of weighing the red, green and blue channels of a pixel into its luminance.
+ * Every profile keeps one lookup table per channel, scaled like the Rec. 709 weights,
+ * so the luminance of any pixel is three table loads and two adds, white sums to
+ * {@code WHITE_LUMINANCE} in every profile, and switching profiles costs nothing per pixel.
+ */
+public enum LuminanceProfile {
+    /**
+     * Rec. 709 weights on the encoded channel values, the default.
+     */
+    REC_709(RED_WEIGHT, GREEN_WEIGHT, BLUE_WEIGHT, false),
+    /**
+     * Rec. 601 weights on the encoded channel values.
+     */
+    REC_601(REC601_RED_WEIGHT, REC601_GREEN_WEIGHT, REC601_BLUE_WEIGHT, false),
+    /**
+     * Rec. 709 weights on channel values linearized by the sRGB transfer function,
+     * that is the relative luminance of the color.
+     */
+    SRGB_LINEAR(RED_WEIGHT, GREEN_WEIGHT, BLUE_WEIGHT, true);
+
+    /**
+     * Start of the green and blue tables.
+     */
+    private static final int GREEN_TABLE = CHANNEL_LEVELS;
+    private static final int BLUE_TABLE = CHANNEL_LEVELS + CHANNEL_LEVELS;
+
+    private final int redWeight;
+    private final int greenWeight;
+    private final int blueWeight;
+    private final boolean linearized;
+
+    /**
+     * The red, green and blue tables, one after the other.
+     */
+    private final int[] table = new int[RGB_CHANNELS * CHANNEL_LEVELS];
+
+    LuminanceProfile(int redWeight, int greenWeight, int blueWeight, boolean linearized) {
+        this.redWeight = redWeight;
+        this.greenWeight = greenWeight;
+        this.blueWeight = blueWeight;
+        this.linearized = linearized;
+        for (int value = 0; value < CHANNEL_LEVELS; value++) {
+            double level = linearized ? linearize(value / RGB_CONSTANT) * RGB_CONSTANT : value;
+            table[value] = (int) Math.round(level * redWeight);
+            table[GREEN_TABLE + value] = (int) Math.round(level * greenWeight);
+            table[BLUE_TABLE + value] =
+                    (int) Math.round(level * blueWeight);
+        }
+    }
+
+    private static double linearize(double encoded) {
+        if (encoded <= SRGB_LINEAR_THRESHOLD) {
+            return encoded / SRGB_LINEAR_SLOPE;
+        }
+        return Math.pow((encoded + SRGB_OFFSET) / (1 + SRGB_OFFSET), SRGB_GAMMA);
+    }
+
+    /**
+     * Computes the luminance of a single packed RGB pixel, scaled by
+     * {@code LUMA_SCALE * RGB_CONSTANT}.
+     *
+     * @param rgb the packed RGB value.
+     * @return the scaled pixel luminance.
+     */
+    public int luminance(int rgb) {
+        return table[(rgb >> RED_SHIFT) & CHANNEL_MASK]
+                + table[GREEN_TABLE + ((rgb >> GREEN_SHIFT) & CHANNEL_MASK)]
+                + table[BLUE_TABLE + (rgb & CHANNEL_MASK)];
+    }
+
+    /**
+     * Returns whether the luminance is a weighted sum of the encoded channel values.
+     * Only then does the luminance of a region follow from its channel sums.
+     *
+     * @return false for profiles that linearize the channels first.
+     */
+    public boolean isWeightedSum() {
+        return !linearized;
+    }
+
+    /**
+     * Computes the scaled luminance sum of a region from its channel sums. The weights
+     * are integers, so this is exactly the sum of {@link #luminance(int)} over the region.
+     * Only valid for profiles that are a weighted sum.
+     *
+     * @param red   the red sum of the region.
+     * @param green the green sum of the region.
+     * @param blue  the blue sum of the region.
+     * @return the scaled luminance sum of the region.
+     */
+    public long luminanceOf(long red, long green, long blue) {
+        return red * redWeight + green * greenWeight + blue * blueWeight;
+    }
+
+    /**
+     * Returns the red weight, scaled by {@code LUMA_SCALE}.
+     *
+     * @return the red weight.
+     */
+    public int getRedWeight() {
+        return redWeight;
+    }
+
+    /**
+     * Returns the green weight, scaled by {@code LUMA_SCALE}.
+     *
+     * @return the green weight.
+     */
+    public int getGreenWeight() {
+        return greenWeight;
+    }
+
+    /**
+     * Returns the blue weight, scaled by {@code LUMA_SCALE}.
+     *
+     * @return the blue weight.
+     */
+    public int getBlueWeight() {
+        return blueWeight;
+    }
+}
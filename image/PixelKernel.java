@@ -0,0 +1,29 @@
+package image;
+
+/**
+ * The per-pixel loops over a run of packed RGB values. All the arithmetic is on
+ * integers, so every implementation gives exactly the same results.
+ */
+interface PixelKernel {
+
+    /**
+     * Computes the scaled luminance of a run of pixels, as {@link LuminanceProfile#luminance(int)} does.
+     *
+     * @param pixels  the packed RGB values.
+     * @param offset  the first pixel of the run.
+     * @param length  the number of pixels in the run.
+     * @param dest    receives the luminance of every pixel, starting at index 0.
+     * @param profile the profile weighing the channels.
+     */
+    void luminance(int[] pixels, int offset, int length, int[] dest, LuminanceProfile profile);
+
+    /**
+     * Adds the red, green and blue channels of a run of pixels to the given sums.
+     *
+     * @param pixels the packed RGB values.
+     * @param offset the first pixel of the run.
+     * @param length the number of pixels in the run.
+     * @param sums   the red, green and blue sums to add to, in this order.
+     */
+    void addChannels(int[] pixels, int offset, int length, long[] sums);
+}
@@ -0,0 +1,32 @@
+package image;
+
+import static ascii_art.Constants.*;
+
+/**
+ * The pixel loops one pixel at a time, available on every JVM.
+ */
+final class ScalarPixelKernel implements PixelKernel {
+
+    @Override
+    public void luminance(int[] pixels, int offset, int length, int[] dest, LuminanceProfile profile) {
+        for (int i = 0; i < length; i++) {
+            dest[i] = profile.luminance(pixels[offset + i]);
+        }
+    }
+
+    @Override
+    public void addChannels(int[] pixels, int offset, int length, long[] sums) {
+        long red = 0;
+        long green = 0;
+        long blue = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int rgb = pixels[i];
+            red += (rgb >> RED_SHIFT) & CHANNEL_MASK;
+            green += (rgb >> GREEN_SHIFT) & CHANNEL_MASK;
+            blue += rgb & CHANNEL_MASK;
+        }
+        sums[FIRST] += red;
+        sums[SECOND] += green;
+        sums[THIRD] += blue;
+    }
+}
@@ -0,0 +1,100 @@
+package image;
+
+import java.awt.*;
+
+/**
+ * A square window over the pixel raster of an {@link Image}.
+ * The view only keeps its offset and size, reads go straight to the
+ * backing raster and no pixels are copied.
+ */
+public class SubImage {
+
+    private final Image image;
+    private final int top;
+    private final int left;
+    private final int size;
+
+    /**
+     * Constructs a view over a square region of the given image.
+     *
+     * @param image the backing image.
+     * @param top   the first row of the region.
+     * @param left  the first column of the region.
+     * @param size  the side length of the region.
+     */
+    public SubImage(Image image, int top, int left, int size) {
+        this.image = image;
+        this.top = top;
+        this.left = left;
+        this.size = size;
+    }
+
+    /**
+     * Returns the side length of the sub-image.
+     *
+     * @return the size in pixels.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the first row of the sub-image in the backing image.
+     *
+     * @return the row offset.
+     */
+    public int getTop() {
+        return top;
+    }
+
+    /**
+     * Returns the first column of the sub-image in the backing image.
+     *
+     * @return the column offset.
+     */
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * Returns the packed RGB value of a pixel, relative to the sub-image.
+     *
+     * @param x the row inside the sub-image.
+     * @param y the column inside the sub-image.
+     * @return the packed 0xRRGGBB value of the pixel.
+     */
+    public int getRGB(int x, int y) {
+        return image.getRGB(top + x, left + y);
+    }
+
+    /**
+     * Returns the color of a pixel, relative to the sub-image.
+     *
+     * @param x the row inside the sub-image.
+     * @param y the column inside the sub-image.
+     * @return the Color of the specified pixel.
+     */
+    public Color getPixel(int x, int y) {
+        return image.getPixel(top + x, left + y);
+    }
+
+    /**
+     * Copies one row of the sub-image into the given buffer.
+     *
+     * @param row  the row inside the sub-image.
+     * @param dest a buffer of at least {@link #getSize()} elements.
+     * @return the given buffer.
+     */
+    public int[] getRow(int row, int[] dest) {
+        return image.getRow(top + row, left, size, dest);
+    }
+
+    /**
+     * Returns the mean brightness of the sub-image, in the range [0, 1].
+     *
+     * @return the mean brightness.
+     */
+    public double getAverageBrightness() {
+        return image.getAverageBrightness(top, left, size);
+    }
+}
@@ -0,0 +1,21 @@
+package image;
+
+/**
+ * Callback for walking the sub-images of an {@link Image} without allocating
+ * a view per sub-image. The region is described by its grid position and
+ * its pixel offset in the backing image.
+ */
+@FunctionalInterface
+public interface SubImageVisitor {
+
+    /**
+     * Called once for every sub-image, row by row.
+     *
+     * @param row  the row of the sub-image in the grid.
+     * @param col  the column of the sub-image in the grid.
+     * @param top  the first pixel row of the sub-image.
+     * @param left the first pixel column of the sub-image.
+     * @param size the side length of the sub-image.
+     */
+    void visit(int row, int col, int top, int left, int size);
+}
@@ -2,6 +2,8 @@ package image_char_matching;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 import static ascii_art.Constants.*;
 
 
@@ -22,26 +24,68 @@ public class CharConverter {
      * whose dimension in pixels is specified.
      */
     public static boolean[][] convertToBoolArray(char c) {
-        BufferedImage img = getBufferedImage(c, DEFAULT_FONT, DEFAULT_BOOL_ARRAY_SIZE);
-        boolean[][] matrix = new boolean[DEFAULT_BOOL_ARRAY_SIZE][DEFAULT_BOOL_ARRAY_SIZE];
-        for(int y = 0 ; y < DEFAULT_BOOL_ARRAY_SIZE ; y++) {
-            for(int x = 0 ; x < DEFAULT_BOOL_ARRAY_SIZE ; x++) {
-                matrix[y][x] = img.getRGB(x, y) == 0; //is the color black
-            }
+        return convertToBoolArray(c, DEFAULT_FONT, DEFAULT_BOOL_ARRAY_SIZE);
+    }
+
+    /**
+     * Renders a given character in the given font to a square black&white image
+     * (2D array of booleans) of the given dimension.
+     *
+     * @param c            the character to render.
+     * @param fontName     the font to render with.
+     * @param pixelsPerRow the dimension of the image in pixels.
+     * @return the rendered character.
+     */
+    public static boolean[][] convertToBoolArray(char c, String fontName, int pixelsPerRow) {
+        BufferedImage img = new BufferedImage(pixelsPerRow, pixelsPerRow, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = img.getGraphics();
+        try {
+            g.setFont(new Font(fontName, Font.PLAIN, pixelsPerRow));
+            return renderGlyph(c, img, g, pixelsPerRow);
+        } finally {
+            g.dispose();
         }
-        return matrix;
     }
 
-    private static BufferedImage getBufferedImage(char c, String fontName, int pixelsPerRow) {
-        String charStr = Character.toString(c);
-        Font font = new Font(fontName, Font.PLAIN, pixelsPerRow);
+    /**
+     * Renders a range of characters in the given font, reusing one font and one canvas
+     * for the whole range.
+     *
+     * @param first        the first character of the range.
+     * @param last         the last character of the range (inclusive).
+     * @param fontName     the font to render with.
+     * @param pixelsPerRow the dimension of each image in pixels.
+     * @return the rendered characters, indexed from {@code first}.
+     */
+    public static boolean[][][] convertRangeToBoolArrays(char first, char last,
+                                                         String fontName, int pixelsPerRow) {
         BufferedImage img = new BufferedImage(pixelsPerRow, pixelsPerRow, BufferedImage.TYPE_INT_ARGB);
+        int[] canvas = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+        boolean[][][] glyphs = new boolean[last - first + 1][][];
         Graphics g = img.getGraphics();
-        g.setFont(font);
+        try {
+            g.setFont(new Font(fontName, Font.PLAIN, pixelsPerRow));
+            for (int c = first; c <= last; c++) {
+                Arrays.fill(canvas, 0);
+                glyphs[c - first] = renderGlyph((char) c, img, g, pixelsPerRow);
+            }
+        } finally {
+            g.dispose();
+        }
+        return glyphs;
+    }
+
+    private static boolean[][] renderGlyph(char c, BufferedImage img, Graphics g, int pixelsPerRow) {
         int xOffset = (int)Math.round(pixelsPerRow *X_OFFSET_FACTOR);
         int yOffset = (int)Math.round(pixelsPerRow *Y_OFFSET_FACTOR);
-        g.drawString(charStr, xOffset, yOffset);
-        return img;
+        g.drawString(Character.toString(c), xOffset, yOffset);
+        boolean[][] matrix = new boolean[pixelsPerRow][pixelsPerRow];
+        for(int y = 0 ; y < pixelsPerRow ; y++) {
+            for(int x = 0 ; x < pixelsPerRow ; x++) {
+                matrix[y][x] = img.getRGB(x, y) == 0; //is the color black
+            }
+        }
+        return matrix;
     }
 
 }
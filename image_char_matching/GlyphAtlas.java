@@ -0,0 +1,78 @@
+package image_char_matching;
+
+import java.util.concurrent.ConcurrentHashMap;
+import static ascii_art.Constants.*;
+
+/**
+ * Process-wide cache of rendered glyphs, keyed by font, glyph size and character.
+ * Every glyph is rendered once through {@link CharConverter} and then shared by all
+ * matcher instances and threads. The returned arrays are shared and must not be modified.
+ */
+public final class GlyphAtlas {
+
+    private static final ConcurrentHashMap<GlyphKey, boolean[][]> glyphs = new ConcurrentHashMap<>();
+
+    private record GlyphKey(String fontName, int pixelsPerRow, char c) {
+    }
+
+    private GlyphAtlas() {
+    }
+
+    /**
+     * Returns the glyph of a character in the default font and size.
+     *
+     * @param c the character.
+     * @return the rendered glyph.
+     */
+    public static boolean[][] getGlyph(char c) {
+        return getGlyph(c, DEFAULT_FONT, DEFAULT_BOOL_ARRAY_SIZE);
+    }
+
+    /**
+     * Returns the glyph of a character, rendering it on first use.
+     *
+     * @param c            the character.
+     * @param fontName     the font to render with.
+     * @param pixelsPerRow the glyph dimension in pixels.
+     * @return the rendered glyph.
+     */
+    public static boolean[][] getGlyph(char c, String fontName, int pixelsPerRow) {
+        return glyphs.computeIfAbsent(new GlyphKey(fontName, pixelsPerRow, c),
+                key -> CharConverter.convertToBoolArray(c, fontName, pixelsPerRow));
+    }
+
+    /**
+     * Renders every glyph of a range in the default font and size in one batch,
+     * so later lookups for the range are cache hits.
+     *
+     * @param first the first character of the range.
+     * @param last  the last character of the range (inclusive).
+     */
+    public static void prerender(char first, char last) {
+        prerender(first, last, DEFAULT_FONT, DEFAULT_BOOL_ARRAY_SIZE);
+    }
+
+    /**
+     * Renders every glyph of a range in one batch, skipping the work when the
+     * whole range is already cached.
+     *
+     * @param first        the first character of the range.
+     * @param last         the last character of the range (inclusive).
+     * @param fontName     the font to render with.
+     * @param pixelsPerRow the glyph dimension in pixels.
+     */
+    public static void prerender(char first, char last, String fontName, int pixelsPerRow) {
+        boolean complete = true;
+        // An int index, since a char one wraps around after '\uffff' and never passes last
+        for (int c = first; c <= last && complete; c++) {
+            complete = glyphs.containsKey(new GlyphKey(fontName, pixelsPerRow, (char) c));
+        }
+        if (complete) {
+            return;
+        }
+        boolean[][][] rendered = CharConverter.convertRangeToBoolArrays(first, last, fontName, pixelsPerRow);
+        for (int i = 0; i < rendered.length; i++) {
+            glyphs.putIfAbsent(new GlyphKey(fontName, pixelsPerRow, (char) (first + i)), rendered[i]);
+        }
+    }
+}
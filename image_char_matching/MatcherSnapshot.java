@@ -0,0 +1,261 @@
+package image_char_matching;
+
+import ascii_art.RenderStats;
+import ascii_art.ROUND;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static ascii_art.Constants.*;
+
+/**
+ * An immutable, primitive form of a matcher's charset for one rounding mode. It is never
+ * modified after construction, so any number of threads may use it without locking while
+ * the matcher it was taken from keeps being edited.
+ * <p>
+ * Keys are normalized between the first and last raw brightness when compiled.
+ * Sorted keys with the first character of each key serve exact searches, and a
+ * table of buckets answers every bucket that no match boundary can fall into.
+ * The glyph masks of all the characters, darkest first, serve shape matching.
+ * <p>
+ * Snapshots of the same charset and rounding mode are interned: matchers holding
+ * identical charsets share one snapshot, and taking it again skips compiling it.
+ */
+public final class MatcherSnapshot {
+
+    /**
+     * The most recently used snapshots, keyed by rounding mode and charset.
+     */
+    private static final Map<String, MatcherSnapshot> INTERNED =
+            new LinkedHashMap<>(SNAPSHOT_INTERN_SIZE, DEFAULT_LOAD_FACTOR, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, MatcherSnapshot> eldest) {
+                    return size() > SNAPSHOT_INTERN_SIZE;
+                }
+            };
+
+    private final double[] keys;
+    private final char[] chars;
+    private final ROUND round;
+    private final String key;
+    private final int[] buckets;
+    private final double low;
+    private final double scale;
+    private final char[] shapeChars;
+    private final long[] shapeMasks;
+
+    /**
+     * Returns the snapshot of a charset and rounding mode, compiling it only if no
+     * identical one is interned.
+     *
+     * @param charBrightnessMap the raw brightness of every character, as kept by the matcher.
+     * @param charSet           the characters of the map.
+     * @param round             the rounding mode.
+     * @return the interned snapshot.
+     */
+    static MatcherSnapshot of(TreeMap<Double, TreeSet<Character>> charBrightnessMap,
+                              TreeSet<Character> charSet, ROUND round) {
+        StringBuilder builder = new StringBuilder(charSet.size() + round.name().length() + 1);
+        builder.append(round.name()).append(SNAPSHOT_KEY_SEPARATOR);
+        for (char c : charSet) {
+            builder.append(c);
+        }
+        String key = builder.toString();
+        synchronized (INTERNED) {
+            MatcherSnapshot interned = INTERNED.get(key);
+            if (interned != null) {
+                return interned;
+            }
+        }
+        RenderStats.Probe probe = RenderStats.begin(RenderStats.Stage.LOOKUP_COMPILE);
+        MatcherSnapshot compiled = new MatcherSnapshot(charBrightnessMap, round, key);
+        RenderStats.end(probe);
+        synchronized (INTERNED) {
+            MatcherSnapshot interned = INTERNED.putIfAbsent(key, compiled);
+            return interned != null ? interned : compiled;
+        }
+    }
+
+    private MatcherSnapshot(TreeMap<Double, TreeSet<Character>> charBrightnessMap, ROUND round, String key) {
+        this.round = round;
+        this.key = key;
+        keys = new double[charBrightnessMap.size()];
+        chars = new char[charBrightnessMap.size()];
+        double minBrightness = charBrightnessMap.firstKey();
+        double maxBrightness = charBrightnessMap.lastKey();
+        int index = 0;
+        for (Map.Entry<Double, TreeSet<Character>> entry : charBrightnessMap.entrySet()) {
+            keys[index] = (entry.getKey() - minBrightness) / (maxBrightness - minBrightness);
+            chars[index] = entry.getValue().first();
+            index++;
+        }
+        low = keys[FIRST];
+        scale = LOOKUP_BUCKETS / (keys[keys.length - 1] - low);
+        buckets = Double.isFinite(scale) && scale > 0 ? buildBuckets() : null;
+
+        int charCount = 0;
+        for (TreeSet<Character> charSet : charBrightnessMap.values()) {
+            charCount += charSet.size();
+        }
+        shapeChars = new char[charCount];
+        shapeMasks = new long[charCount * MASK_WORDS];
+        index = 0;
+        for (TreeSet<Character> charSet : charBrightnessMap.values()) {
+            for (char c : charSet) {
+                shapeChars[index] = c;
+                packGlyph(GlyphAtlas.getGlyph(c), shapeMasks, index * MASK_WORDS);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Returns the rounding mode of the snapshot.
+     *
+     * @return the rounding mode.
+     */
+    public ROUND getRound() {
+        return round;
+    }
+
+    /**
+     * Returns the identity of the snapshot: its rounding mode followed by all its
+     * characters in order. Snapshots with equal keys match every input the same way.
+     *
+     * @return the key the snapshot is interned under.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the number of characters in the snapshot.
+     *
+     * @return the charset size.
+     */
+    public int getSetSize() {
+        return shapeChars.length;
+    }
+
+    /**
+     * Finds the character whose glyph is closest in shape to the given mask, that is the one
+     * differing from it in the fewest cells. Ties go to the darker character.
+     *
+     * @param mask the shape mask of a tile, as filled by {@code Image.getShapeMask}.
+     * @return the character whose glyph mask is at the smallest Hamming distance.
+     */
+    public char getCharByShape(long[] mask) {
+        int bestIndex = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0, base = 0; i < shapeChars.length; i++, base += MASK_WORDS) {
+            int distance = 0;
+            // Stop counting once this glyph can no longer beat the best one
+            for (int word = 0; word < MASK_WORDS && distance < bestDistance; word++) {
+                distance += Long.bitCount(mask[word] ^ shapeMasks[base + word]);
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                bestIndex = i;
+            }
+        }
+        return shapeChars[bestIndex];
+    }
+
+    /**
+     * Fills every bucket with its character, or marks it as mixed when a key or,
+     * for ABS, the switch point between two keys may lie in or next to it.
+     */
+    private int[] buildBuckets() {
+        int[] table = new int[LOOKUP_BUCKETS];
+        for (int i = 0; i < keys.length; i++) {
+            markMixed(table, keys[i]);
+            if (round == ROUND.ABS && i > 0) {
+                markMixed(table, (keys[i - 1] + keys[i]) / 2);
+            }
+        }
+        for (int bucket = 0; bucket < LOOKUP_BUCKETS; bucket++) {
+            double center = low + (bucket + HALF) / scale;
+            if (table[bucket] != MIXED_BUCKET && bucketOf(center) == bucket) {
+                table[bucket] = search(center);
+            } else {
+                table[bucket] = MIXED_BUCKET;
+            }
+        }
+        return table;
+    }
+
+    private void markMixed(int[] table, double boundary) {
+        int bucket = bucketOf(boundary);
+        for (int i = Math.max(0, bucket - 1); i <= Math.min(LOOKUP_BUCKETS - 1, bucket + 1); i++) {
+            table[i] = MIXED_BUCKET;
+        }
+    }
+
+    private int bucketOf(double brightness) {
+        return Math.min(LOOKUP_BUCKETS - 1, (int) ((brightness - low) * scale));
+    }
+
+    /**
+     * Finds the character whose brightness is closest to the given brightness value,
+     * based on the snapshot's rounding mode.
+     *
+     * @param brightness the brightness value to match.
+     * @return the character whose brightness is closest to the input brightness.
+     */
+    public char getCharByImageBrightness(double brightness) {
+        if (keys.length == 1) {
+            return chars[FIRST];
+        }
+        // If we are out of search boundaries
+        if (!(brightness >= low && brightness <= keys[keys.length - 1])) {
+            throw new IllegalArgumentException(SEARCH_OUT_OF_BOUND);
+        }
+        if (buckets != null) {
+            int match = buckets[bucketOf(brightness)];
+            if (match != MIXED_BUCKET) {
+                return (char) match;
+            }
+        }
+        return search(brightness);
+    }
+
+    private char search(double brightness) {
+        int index = Arrays.binarySearch(keys, brightness);
+        // If we have a perfect match
+        if (index >= 0) {
+            return chars[index];
+        }
+        int higher = -index - 1;
+        int lower = higher - 1;
+        switch (round) {
+            case ABS:
+                if (keys[higher] - brightness > brightness - keys[lower]) {
+                    return chars[lower];
+                }
+                return chars[higher];
+            case UP:
+                return chars[higher];
+            case DOWN:
+                return chars[lower];
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Packs a glyph into a shape mask, row by row, one bit per white pixel.
+     */
+    private static void packGlyph(boolean[][] glyph, long[] masks, int offset) {
+        for (int row = 0; row < DEFAULT_BOOL_ARRAY_SIZE; row++) {
+            for (int col = 0; col < DEFAULT_BOOL_ARRAY_SIZE; col++) {
+                if (glyph[row][col]) {
+                    int cell = row * DEFAULT_BOOL_ARRAY_SIZE + col;
+                    masks[offset + cell / Long.SIZE] |= 1L << (cell % Long.SIZE);
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package image_char_matching;
 import ascii_art.ROUND;
 import java.util.*;
+import java.util.stream.IntStream;
 import static ascii_art.Constants.*;
 
 
@@ -13,35 +14,49 @@ import static ascii_art.Constants.*;
  * <p>
  * The class supports various rounding modes (defined in the {@link ROUND} enum)
  * to control how brightness values are matched.
+ *
+ * <p>
+ * Lookups go through an immutable {@link MatcherSnapshot} that quantizes brightness into
+ * {@code LOOKUP_BUCKETS} buckets, so most lookups are a single array index.
+ * The snapshot is replaced, never modified, after the charset or the rounding mode
+ * changes, and gives the same results as searching the brightness map directly.
+ *
+ * <p>
+ * Shape matching compares the glyphs themselves instead of their brightness: every glyph
+ * is packed into a bit mask, and a tile's mask is matched to the glyph at the smallest
+ * Hamming distance, counted with popcount over a few longs per glyph.
+ *
+ * <p>
+ * Edits and the creation of snapshots are serialized on the matcher. A render takes one
+ * snapshot with {@link #snapshot()} and matches every tile against it without locking,
+ * so it sees one consistent charset however the matcher is edited meanwhile.
  */
 public class SubImgCharMatcher {
 
-    /**
-     * The minimum brightness value found in the character set.
-     */
-    private double minBrightness = Double.MAX_VALUE;
-
-    /**
-     * The maximum brightness value found in the character set.
-     */
-    private double maxBrightness = Double.MIN_VALUE;
-
     /**
      * The rounding mode used for matching brightness values.
      */
     private ROUND round;
 
     /**
-     * A mapping between normalized brightness values and corresponding characters.
+     * A mapping between raw brightness values and corresponding characters.
      * Each brightness value may map to multiple characters stored in a sorted set.
+     * The minimum and maximum are its first and last keys, so they are kept up to
+     * date in O(log(n)) and normalization is deferred to the compiled lookup.
      */
-    private TreeMap<Double, TreeSet<Character>> charBrightnessMap;
+    private final TreeMap<Double, TreeSet<Character>> charBrightnessMap;
 
     /**
      * A set of currently available characters, maintained for quick access and display.
      */
     private final TreeSet<Character> currentChars;
 
+    /**
+     * The snapshot of the current map and rounding mode,
+     * or null if it must be taken again before the next lookup.
+     */
+    private volatile MatcherSnapshot lookup;
+
     /**
      * Constructs a SubImgCharMatcher instance with the given character set.
      *
@@ -53,15 +68,8 @@ public class SubImgCharMatcher {
         this.charBrightnessMap = new TreeMap<>();
 
         for (char c : charSet) {
-            currentChars.add(c);
-            double rawBrightness = calculateSingleCharBrightness(c);
-            updateMinAndMaxValues(rawBrightness);
-
-            charBrightnessMap
-                    .computeIfAbsent(rawBrightness, _ -> new TreeSet<>())
-                    .add(c);
+            addChar(c);
         }
-        reNormalizeBrightness();
     }
 
     /**
@@ -69,8 +77,9 @@ public class SubImgCharMatcher {
      *
      * @param round the rounding mode to set.
      */
-    public void setRound(ROUND round) {
+    public synchronized void setRound(ROUND round) {
         this.round = round;
+        this.lookup = null;
     }
 
     /**
@@ -81,123 +90,172 @@ public class SubImgCharMatcher {
      * @return the character whose brightness is closest to the input brightness.
      */
     public char getCharByImageBrightness(double brightness) {
-        if (charBrightnessMap.isEmpty()){
-            throw new RuntimeException(TREE_IS_EMPTY);
-        }
-
-        else if (charBrightnessMap.size() == 1){
-            return charBrightnessMap.firstEntry().getValue().first();
-        }
+        return currentLookup().getCharByImageBrightness(brightness);
+    }
 
-        // If we have a perfect match
-        else if (charBrightnessMap.get(brightness) != null){
-            return charBrightnessMap.get(brightness).first();
-        }
+    /**
+     * Finds the character whose glyph is closest in shape to the given mask, that is the one
+     * differing from it in the fewest cells. Ties go to the darker character.
+     * The rounding mode does not apply.
+     *
+     * @param mask the shape mask of a tile, as filled by {@code Image.getShapeMask}.
+     * @return the character whose glyph mask is at the smallest Hamming distance.
+     */
+    public char getCharByShape(long[] mask) {
+        return currentLookup().getCharByShape(mask);
+    }
 
-        // If we are out of search boundaries
-        else if (charBrightnessMap.firstKey() > brightness || charBrightnessMap.lastKey() < brightness){
-            throw new IllegalArgumentException(SEARCH_OUT_OF_BOUND);
-        }
+    private MatcherSnapshot currentLookup() {
+        MatcherSnapshot compiled = lookup;
+        return compiled != null ? compiled : snapshot();
+    }
 
-        // We don't have a perfect match
-            switch (round) {
-                case ABS:
-                    Map.Entry<Double, TreeSet<Character>> higher =
-                            charBrightnessMap.higherEntry(brightness);
-                    Map.Entry<Double, TreeSet<Character>> lower =
-                            charBrightnessMap.lowerEntry(brightness);
-                    if (higher.getKey() - brightness > brightness - lower.getKey()){
-                        return lower.getValue().first();
-                    }
-                    else {
-                        return higher.getValue().first();
-                    }
-                case UP:
-                    return charBrightnessMap.higherEntry(brightness).getValue().first();
-                case DOWN:
-                    return charBrightnessMap.lowerEntry(brightness).getValue().first();
-                default:
-                    throw new IllegalArgumentException();
+    /**
+     * Returns an immutable snapshot of the current charset and rounding mode. Later edits
+     * of the matcher do not affect it, so it may be shared by any number of threads.
+     * Taking a snapshot of an unchanged matcher returns the same one.
+     *
+     * @return the snapshot.
+     */
+    public synchronized MatcherSnapshot snapshot() {
+        MatcherSnapshot compiled = lookup;
+        if (compiled == null) {
+            if (charBrightnessMap.isEmpty()){
+                throw new RuntimeException(TREE_IS_EMPTY);
             }
+            compiled = MatcherSnapshot.of(charBrightnessMap, currentChars, round);
+            lookup = compiled;
         }
+        return compiled;
+    }
 
 
     /**
-     * Adds a character to the mapping, calculating its brightness and updating
-     * the normalization if necessary.
+     * Adds a character to the mapping. Normalization is redone lazily on the next lookup.
      *
      * @param c the character to add.
      */
-    public void addChar(char c) {
-        if (!currentChars.contains(c)) {
-            currentChars.add(c);
-            double rawBrightness = calculateSingleCharBrightness(c);
-            boolean normalizationNeeded = updateMinAndMaxValues(rawBrightness);
-            double normalizedBrightness = (rawBrightness - minBrightness) / (maxBrightness - minBrightness);
-            putCharInExistingSetOrNewOne(c,normalizedBrightness, this.charBrightnessMap);
-            if (normalizationNeeded) {
-                reNormalizeBrightness();
-            }
+    public synchronized void addChar(char c) {
+        if (currentChars.add(c)) {
+            lookup = null;
+            charBrightnessMap
+                    .computeIfAbsent(calculateSingleCharBrightness(c), _ -> new TreeSet<>())
+                    .add(c);
         }
     }
 
     /**
-     * Removes a character from the mapping and updates the normalization if needed.
+     * Removes a character from the mapping. Normalization is redone lazily on the next lookup.
      *
      * @param c the character to remove.
      */
-    public void removeChar(char c) {
-
-        if (currentChars.contains(c) && !charBrightnessMap.isEmpty()) {
-            // Remove the character from currentChars
-            currentChars.remove(c);
-
-            // Try to remove the character from the last entry (if it exists)
-            if (charBrightnessMap.lastEntry() != null &&
-                    charBrightnessMap.lastEntry().getValue().contains(c)) {
-                charBrightnessMap.lastEntry().getValue().remove(c);
-                // If the value is empty after removal, remove the entry
-                if (charBrightnessMap.lastEntry().getValue().isEmpty()) {
-                    charBrightnessMap.remove(charBrightnessMap.lastEntry().getKey());
-                    reNormalizeBrightness();
-                }
-            }
-            // Try to remove the character from the first entry (if it exists)
-            else if (charBrightnessMap.firstEntry() != null &&
-                    charBrightnessMap.firstEntry().getValue().contains(c)) {
-                charBrightnessMap.firstEntry().getValue().remove(c);
+    public synchronized void removeChar(char c) {
+        if (currentChars.remove(c)) {
+            lookup = null;
+            double rawBrightness = calculateSingleCharBrightness(c);
+            TreeSet<Character> charSet = charBrightnessMap.get(rawBrightness);
+            if (charSet != null) {
+                charSet.remove(c);
                 // If the value is empty after removal, remove the entry
-                if (charBrightnessMap.firstEntry().getValue().isEmpty()) {
-                    charBrightnessMap.remove(charBrightnessMap.firstEntry().getKey());
-                    reNormalizeBrightness();
+                if (charSet.isEmpty()) {
+                    charBrightnessMap.remove(rawBrightness);
                 }
             }
-            // The char is not at the edges, calc and find him
-            else {
-                double rawBrightness = calculateSingleCharBrightness(c);
-                double normalizedBrightness =
-                        (rawBrightness - minBrightness)/(maxBrightness - minBrightness);
+        }
+    }
 
-                TreeSet<Character> charSet = charBrightnessMap.get(normalizedBrightness);
-                if (charSet != null) {
-                    charSet.remove(c);
-                    if (charSet.isEmpty()) {
-                        charBrightnessMap.remove(normalizedBrightness);
-                    }
-                }
-                if (updateMinAndMaxValues(rawBrightness)) {
-                    reNormalizeBrightness();
+
+
+    /**
+     * Adds all the given characters in one batch. Missing glyphs are rendered in parallel,
+     * the map is updated once and the new lookup table is published in a single step.
+     *
+     * @param chars the characters to add.
+     */
+    public synchronized void addChars(CharSequence chars) {
+        int[] added = chars.chars().distinct().filter(c -> !currentChars.contains((char) c)).toArray();
+        if (added.length == 0) {
+            return;
+        }
+        double[] rawBrightness = new double[added.length];
+        IntStream.range(0, added.length).parallel()
+                .forEach(i -> rawBrightness[i] = calculateSingleCharBrightness((char) added[i]));
+
+        for (int i = 0; i < added.length; i++) {
+            currentChars.add((char) added[i]);
+            charBrightnessMap
+                    .computeIfAbsent(rawBrightness[i], _ -> new TreeSet<>())
+                    .add((char) added[i]);
+        }
+        publishLookup();
+    }
+
+    /**
+     * Removes all the given characters in one batch and publishes the new lookup
+     * table in a single step.
+     *
+     * @param chars the characters to remove.
+     */
+    public synchronized void removeChars(CharSequence chars) {
+        boolean changed = false;
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (currentChars.remove(c)) {
+                changed = true;
+                double rawBrightness = calculateSingleCharBrightness(c);
+                TreeSet<Character> charSet = charBrightnessMap.get(rawBrightness);
+                if (charSet != null && charSet.remove(c) && charSet.isEmpty()) {
+                    charBrightnessMap.remove(rawBrightness);
                 }
             }
         }
+        if (changed) {
+            publishLookup();
+        }
     }
 
+    /**
+     * Adds a range of characters in one batch, rendering the range's glyphs together.
+     *
+     * @param first the first character of the range.
+     * @param last  the last character of the range (inclusive).
+     */
+    public void addRange(char first, char last) {
+        GlyphAtlas.prerender(first, last);
+        addChars(rangeOf(first, last));
+    }
 
+    /**
+     * Removes a range of characters in one batch.
+     *
+     * @param first the first character of the range.
+     * @param last  the last character of the range (inclusive).
+     */
+    public void removeRange(char first, char last) {
+        removeChars(rangeOf(first, last));
+    }
+
+    private static CharSequence rangeOf(char first, char last) {
+        StringBuilder range = new StringBuilder(Math.max(0, last - first + 1));
+        for (int c = first; c <= last; c++) {
+            range.append((char) c);
+        }
+        return range;
+    }
+
+    /**
+     * Takes the snapshot of the current map and publishes it with a single write,
+     * so a lookup sees either the snapshot before the batch or the one after it.
+     */
+    private void publishLookup() {
+        lookup = charBrightnessMap.isEmpty() ? null
+                : MatcherSnapshot.of(charBrightnessMap, currentChars, round);
+    }
 
     /**
      * Prints the current set of characters managed by this instance.
      */
-    public void printCurrentCharset() {
+    public synchronized void printCurrentCharset() {
         for (Character c : currentChars) {
             System.out.print(c + " ");
         }
@@ -209,48 +267,19 @@ public class SubImgCharMatcher {
      *
      * @return the number of characters in the set.
      */
-    public int getSetSize() {
+    public synchronized int getSetSize() {
         return currentChars.size();
     }
 
     /**
-     * Recomputes and normalizes brightness values based on the updated min and max values.
-     */
-    private void reNormalizeBrightness() {
-        minBrightness = Double.MAX_VALUE;
-        maxBrightness = Double.MIN_VALUE;
-
-        // Find the minimum and maximum brightness values
-        for (Map.Entry<Double, TreeSet<Character>> entry : charBrightnessMap.entrySet()) {
-            for(char c : entry.getValue()){
-                double rawBrightness = calculateSingleCharBrightness(c);
-                if (rawBrightness < minBrightness) minBrightness = rawBrightness;
-                if (rawBrightness > maxBrightness) maxBrightness = rawBrightness;
-            }
-        }
-
-        TreeMap<Double, TreeSet<Character>> newTree = new TreeMap<>();
-
-        // Normalize brightness values and store in the new map
-        for (Map.Entry<Double, TreeSet<Character>> entry : charBrightnessMap.entrySet()) {
-            for (char c : entry.getValue()) {
-                double normalizedBrightness =
-                        (calculateSingleCharBrightness(c)
-                                - minBrightness) / (maxBrightness - minBrightness);
-                putCharInExistingSetOrNewOne(c, normalizedBrightness, newTree);
-            }
-        }
-        charBrightnessMap = newTree;
-    }
-
-    /**
-     * Calculates the brightness of a single character by analyzing its binary representation.
+     * Calculates the brightness of a single character by analyzing its binary representation,
+     * taken from the shared {@link GlyphAtlas}.
      *
      * @param character the character whose brightness is to be calculated.
      * @return a brightness value between 0 and 1.
      */
     private double calculateSingleCharBrightness(Character character) {
-        boolean[][] charArray = CharConverter.convertToBoolArray(character);
+        boolean[][] charArray = GlyphAtlas.getGlyph(character);
         double totalPixels = DEFAULT_BOOL_ARRAY_SIZE * DEFAULT_BOOL_ARRAY_SIZE;
         double whitePixels = 0;
 
@@ -263,35 +292,4 @@ public class SubImgCharMatcher {
         }
         return whitePixels / totalPixels;
     }
-
-    /**
-     * Updates the minimum and maximum brightness values.
-     *
-     * @param rawBrightness the brightness value to check.
-     * @return true if the min or max values were updated, false otherwise.
-     */
-    private boolean updateMinAndMaxValues(double rawBrightness) {
-        boolean updated = false;
-        if (rawBrightness < minBrightness) {
-            minBrightness = rawBrightness;
-            updated = true;
-        }
-        if (rawBrightness > maxBrightness) {
-            maxBrightness = rawBrightness;
-            updated = true;
-        }
-        return updated;
-    }
-
-    private void putCharInExistingSetOrNewOne(char c, double normalizedBrightness, TreeMap<Double
-            , TreeSet<Character>> treeMap ){
-        if (treeMap.containsKey(normalizedBrightness)){
-            treeMap.get(normalizedBrightness).add(c);
-        }
-        else {
-            TreeSet<Character> treeSet = new TreeSet<>();
-            treeSet.add(c);
-            treeMap.put(normalizedBrightness,treeSet);
-        }
-    }
 }
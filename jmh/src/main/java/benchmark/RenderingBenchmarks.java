@@ -0,0 +1,536 @@
+package benchmark;
+
+import ascii_art.AsciiArtAlgorithm;
+import ascii_art.ROUND;
+import ascii_art.RenderCache;
+import ascii_output.CompactHtmlOutput;
+import ascii_output.ConsoleRowSink;
+import ascii_output.HtmlRowSink;
+import image.Image;
+import image.LuminanceProfile;
+import image_char_matching.CharConverter;
+import image_char_matching.SubImgCharMatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static ascii_art.Constants.*;
+
+
+/**
+ * JMH benchmarks of the rendering hot paths, on a synthetic image generated in-process
+ * so runs are reproducible. Run them through {@code gradle :jmh:jmh}, which adds the GC
+ * profiler so every result comes with its allocation rate and bytes per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--enable-preview", "--add-modules", "jdk.incubator.vector"})
+public class RenderingBenchmarks {
+
+    /**
+     * The synthetic image, its packed pixels, a padded copy and the same image encoded
+     * as PNG and JPEG files.
+     */
+    @State(Scope.Benchmark)
+    public static class ImageState {
+        BufferedImage source;
+        int[] pixels;
+        Image padded;
+        File png;
+        File jpg;
+
+        /**
+         * Generates the image and writes its files.
+         *
+         * @throws IOException if the files cannot be written.
+         */
+        @Setup
+        public void setUp() throws IOException {
+            source = syntheticImage(BENCHMARK_IMAGE_WIDTH, BENCHMARK_IMAGE_HEIGHT);
+            pixels = new int[BENCHMARK_IMAGE_WIDTH * BENCHMARK_IMAGE_HEIGHT];
+            source.getRGB(FIRST, FIRST, BENCHMARK_IMAGE_WIDTH, BENCHMARK_IMAGE_HEIGHT,
+                    pixels, FIRST, BENCHMARK_IMAGE_WIDTH);
+            padded = new Image(source);
+            padded.padImage();
+            png = File.createTempFile(BENCHMARK_TEMP_PREFIX, BENCHMARK_PNG_SUFFIX);
+            jpg = File.createTempFile(BENCHMARK_TEMP_PREFIX, BENCHMARK_JPG_SUFFIX);
+            writeImage(source, png);
+            writeImage(source, jpg);
+        }
+
+        /**
+         * Deletes the image files.
+         */
+        @TearDown
+        public void tearDown() {
+            png.delete();
+            jpg.delete();
+        }
+    }
+
+    /**
+     * A matcher over the whole printable ASCII range, with the brightness values and the
+     * shape masks looked up.
+     */
+    @State(Scope.Benchmark)
+    public static class MatcherState {
+        @Param({"UP", "DOWN", "ABS"})
+        ROUND round;
+        SubImgCharMatcher matcher;
+        double[] probes;
+        long[][] masks;
+
+        /**
+         * Builds the matcher, the brightness values and the masks.
+         */
+        @Setup
+        public void setUp() {
+            matcher = new SubImgCharMatcher(charSet);
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+            matcher.setRound(round);
+            probes = new double[BENCHMARK_PROBES];
+            Random random = new Random(BENCHMARK_PROBES);
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = random.nextDouble();
+            }
+            masks = new long[BENCHMARK_PROBES][MASK_WORDS];
+            for (long[] mask : masks) {
+                for (int word = 0; word < MASK_WORDS; word++) {
+                    mask[word] = random.nextLong();
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolutions of the rendering benchmark, with a matcher over the whole printable
+     * ASCII range and algorithms kept across operations.
+     */
+    @State(Scope.Benchmark)
+    public static class ResolutionState {
+        @Param({"16", "64", "256", "1024"})
+        int resolution;
+        SubImgCharMatcher matcher;
+        AsciiArtAlgorithm cached;
+        AsciiArtAlgorithm shape;
+
+        /**
+         * Builds the matcher and the algorithms.
+         *
+         * @param image the padded image.
+         */
+        @Setup
+        public void setUp(ImageState image) {
+            matcher = new SubImgCharMatcher(charSet);
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+            cached = new AsciiArtAlgorithm(image.padded, resolution, matcher);
+            shape = new AsciiArtAlgorithm(image.padded, resolution, matcher);
+            shape.setShapeMatching(true);
+        }
+    }
+
+    /**
+     * The luminance profile and the pixel kernel of the luminance benchmarks. Each
+     * parameter combination runs in a fork of its own, so switching the kernel of all
+     * images affects no other benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class LuminanceState {
+        @Param({"REC_709", "REC_601", "SRGB_LINEAR"})
+        LuminanceProfile profile;
+        @Param({"false", "true"})
+        boolean vector;
+        SubImgCharMatcher matcher;
+
+        /**
+         * Selects the kernel and builds the matcher.
+         */
+        @Setup
+        public void setUp() {
+            if (Image.setVectorKernel(vector) != vector) {
+                throw new IllegalStateException(BENCHMARK_NO_VECTOR_KERNEL);
+            }
+            matcher = new SubImgCharMatcher(charSet);
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+        }
+    }
+
+    /**
+     * A cache holding the console render of the PNG file.
+     */
+    @State(Scope.Benchmark)
+    public static class CacheState {
+        byte[] encoded;
+        SubImgCharMatcher matcher;
+        RenderCache cache;
+
+        /**
+         * Renders the image and caches the render.
+         *
+         * @param image the image files.
+         * @throws IOException if the file cannot be read.
+         */
+        @Setup
+        public void setUp(ImageState image) throws IOException {
+            encoded = Files.readAllBytes(image.png.toPath());
+            matcher = new SubImgCharMatcher(charSet);
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+            try (ConsoleRowSink console = new ConsoleRowSink(Channels.newChannel(rendered))) {
+                new AsciiArtAlgorithm(image.padded, BENCHMARK_HTML_RESOLUTION, matcher).run(console);
+            }
+            cache = new RenderCache(RENDER_CACHE_MAX_BYTES, null);
+            cache.put(RenderCache.key(encoded, BENCHMARK_HTML_RESOLUTION, matcher.snapshot(),
+                    RENDER_FORMAT_CONSOLE_SINK), rendered.toByteArray());
+        }
+    }
+
+    /**
+     * The art written by the HTML benchmarks, and their output files. The size of every
+     * written file is printed at the end, to compare the writers' output sizes.
+     */
+    @State(Scope.Benchmark)
+    public static class HtmlState {
+        char[][] asciiArt;
+        File rowSinkFile;
+        File compactFile;
+        File collapsedFile;
+
+        /**
+         * Renders the art and creates the files.
+         *
+         * @param image the padded image.
+         * @throws IOException if the files cannot be created.
+         */
+        @Setup
+        public void setUp(ImageState image) throws IOException {
+            SubImgCharMatcher matcher = new SubImgCharMatcher(charSet);
+            matcher.addRange((char) ASCII_START, (char) (ASCII_END - 1));
+            asciiArt = new AsciiArtAlgorithm(image.padded, BENCHMARK_HTML_RESOLUTION, matcher).run();
+            rowSinkFile = File.createTempFile(BENCHMARK_TEMP_PREFIX, BENCHMARK_HTML_SUFFIX);
+            compactFile = File.createTempFile(BENCHMARK_TEMP_PREFIX, BENCHMARK_HTML_SUFFIX);
+            collapsedFile = File.createTempFile(BENCHMARK_TEMP_PREFIX, BENCHMARK_HTML_SUFFIX);
+        }
+
+        /**
+         * Prints the size of every written file and deletes the files.
+         */
+        @TearDown
+        public void tearDown() {
+            reportSize(BENCHMARK_HTML_ROW_SINK, rowSinkFile);
+            reportSize(BENCHMARK_HTML_COMPACT, compactFile);
+            reportSize(BENCHMARK_HTML_COLLAPSED, collapsedFile);
+            rowSinkFile.delete();
+            compactFile.delete();
+            collapsedFile.delete();
+        }
+
+        private static void reportSize(String name, File file) {
+            if (file.length() > 0) {
+                System.out.println(String.format(Locale.ROOT, BENCHMARK_SIZE_REPORT, name, file.length()));
+            }
+        }
+    }
+
+    /**
+     * Number of charset churn operations run, which picks each operation's own character.
+     */
+    @State(Scope.Thread)
+    public static class ChurnState {
+        int operations;
+    }
+
+    /**
+     * Decodes the PNG file.
+     *
+     * @param state the image files.
+     * @return the decoded image.
+     * @throws IOException if the file cannot be decoded.
+     */
+    @Benchmark
+    public Image decodePng(ImageState state) throws IOException {
+        return new Image(state.png.getPath());
+    }
+
+    /**
+     * Decodes the JPEG file.
+     *
+     * @param state the image files.
+     * @return the decoded image.
+     * @throws IOException if the file cannot be decoded.
+     */
+    @Benchmark
+    public Image decodeJpg(ImageState state) throws IOException {
+        return new Image(state.jpg.getPath());
+    }
+
+    /**
+     * Decodes every other pixel of the JPEG file in each direction.
+     *
+     * @param state the image files.
+     * @return the decoded image.
+     * @throws IOException if the file cannot be decoded.
+     */
+    @Benchmark
+    public Image decodeJpgSubsampled(ImageState state) throws IOException {
+        return new Image(state.jpg.getPath(), RES_MULTI);
+    }
+
+    /**
+     * Pads an image wrapping the shared pixels, so no pixel is copied per operation.
+     *
+     * @param state the image pixels.
+     * @return the padded image.
+     */
+    @Benchmark
+    public Image padImage(ImageState state) {
+        Image image = new Image(state.pixels, BENCHMARK_IMAGE_WIDTH, BENCHMARK_IMAGE_HEIGHT);
+        image.padImage();
+        return image;
+    }
+
+    /**
+     * Splits the padded image into sub-image views.
+     *
+     * @param state the padded image.
+     * @return the sub-images.
+     */
+    @Benchmark
+    public Object divideIntoSubImages(ImageState state) {
+        return state.padded.divideIntoSubImages(BENCHMARK_TILE_SIZE);
+    }
+
+    /**
+     * Builds the luminance table of a new image, in one profile and on one kernel.
+     *
+     * @param state     the image pixels.
+     * @param luminance the profile and the kernel.
+     * @return the brightness of the first pixel.
+     */
+    @Benchmark
+    public double luminanceTable(ImageState state, LuminanceState luminance) {
+        Image image = new Image(state.pixels, BENCHMARK_IMAGE_WIDTH, BENCHMARK_IMAGE_HEIGHT);
+        image.setLuminanceProfile(luminance.profile);
+        return image.getAverageBrightness(FIRST, FIRST, 1);
+    }
+
+    /**
+     * Averages the color of every tile of the padded image on one kernel.
+     *
+     * @param state     the padded image.
+     * @param luminance the kernel.
+     * @return the colors.
+     */
+    @Benchmark
+    public int[][] colorGrid(ImageState state, LuminanceState luminance) {
+        return new AsciiArtAlgorithm(state.padded, state.padded.getHeight() / BENCHMARK_TILE_SIZE,
+                luminance.matcher).getColorGrid();
+    }
+
+    /**
+     * Renders the padded image with a new algorithm, so no brightness level is cached.
+     *
+     * @param state      the padded image.
+     * @param resolution the resolution and the matcher.
+     * @return the ASCII art.
+     */
+    @Benchmark
+    public char[][] run(ImageState state, ResolutionState resolution) {
+        return new AsciiArtAlgorithm(state.padded, resolution.resolution, resolution.matcher).run();
+    }
+
+    /**
+     * Renders the padded image again with the same algorithm, reusing its brightness level.
+     *
+     * @param resolution the algorithm.
+     * @return the ASCII art.
+     */
+    @Benchmark
+    public char[][] runCached(ResolutionState resolution) {
+        return resolution.cached.run();
+    }
+
+    /**
+     * Renders the padded image matching tiles by shape.
+     *
+     * @param resolution the algorithm.
+     * @return the ASCII art.
+     */
+    @Benchmark
+    public char[][] runShape(ResolutionState resolution) {
+        return resolution.shape.run();
+    }
+
+    /**
+     * Answers a render from the cache: hashes the encoded file and copies nothing,
+     * to compare with decoding and rendering.
+     *
+     * @param state the cache and the encoded file.
+     * @return the cached render.
+     */
+    @Benchmark
+    public byte[] renderCacheHit(CacheState state) {
+        return state.cache.get(RenderCache.key(state.encoded, BENCHMARK_HTML_RESOLUTION,
+                state.matcher.snapshot(), RENDER_FORMAT_CONSOLE_SINK));
+    }
+
+    /**
+     * Looks up a character for every probe brightness.
+     *
+     * @param state the matcher and the probes.
+     * @param sink  consumes every character.
+     */
+    @Benchmark
+    public void getCharByImageBrightness(MatcherState state, Blackhole sink) {
+        for (double probe : state.probes) {
+            sink.consume(state.matcher.getCharByImageBrightness(probe));
+        }
+    }
+
+    /**
+     * Looks up a character for every shape mask.
+     *
+     * @param state the matcher and the masks.
+     * @param sink  consumes every character.
+     */
+    @Benchmark
+    public void getCharByShape(MatcherState state, Blackhole sink) {
+        for (long[] mask : state.masks) {
+            sink.consume(state.matcher.getCharByShape(mask));
+        }
+    }
+
+    /**
+     * Adds and removes a range of characters one at a time, forcing the lookup to be
+     * rebuilt after every addition. Every operation starts from a charset with a
+     * character of its own, cycling through more charsets than snapshots are interned,
+     * so every lookup is compiled rather than found interned.
+     *
+     * @param state the operation count.
+     * @return the matcher.
+     */
+    @Benchmark
+    public SubImgCharMatcher addRemoveChurn(ChurnState state) {
+        SubImgCharMatcher churn = new SubImgCharMatcher(charSet);
+        churn.addChar((char) (BENCHMARK_CHURN_SALT_FIRST
+                + state.operations++ % (BENCHMARK_CHURN_SALT_LAST - BENCHMARK_CHURN_SALT_FIRST + 1)));
+        for (char c = BENCHMARK_CHURN_FIRST; c <= BENCHMARK_CHURN_LAST; c++) {
+            churn.addChar(c);
+            churn.getCharByImageBrightness(MIN_BRIGHTNESS_PROBE);
+        }
+        for (char c = BENCHMARK_CHURN_FIRST; c <= BENCHMARK_CHURN_LAST; c++) {
+            churn.removeChar(c);
+        }
+        return churn;
+    }
+
+    /**
+     * Renders a glyph into a boolean array.
+     *
+     * @return the glyph.
+     */
+    @Benchmark
+    public boolean[][] convertToBoolArray() {
+        return CharConverter.convertToBoolArray(BENCHMARK_GLYPH);
+    }
+
+    /**
+     * Writes the art through the streaming HTML writer.
+     *
+     * @param state the art and the file.
+     * @return the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public File htmlRowSink(HtmlState state) throws IOException {
+        try (HtmlRowSink sink = new HtmlRowSink(state.rowSinkFile.getPath(), DEFAULT_FONT)) {
+            sink.begin(state.asciiArt.length, state.asciiArt[FIRST].length);
+            for (int i = 0; i < state.asciiArt.length; i++) {
+                sink.row(i, state.asciiArt[i]);
+            }
+        }
+        return state.rowSinkFile;
+    }
+
+    /**
+     * Writes the art through the compact HTML writer.
+     *
+     * @param state the art and the file.
+     * @return the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public File htmlCompact(HtmlState state) throws IOException {
+        new CompactHtmlOutput(state.compactFile.getPath(), DEFAULT_FONT, false).out(state.asciiArt);
+        return state.compactFile;
+    }
+
+    /**
+     * Writes the art through the compact HTML writer, collapsing the spaces ending each row.
+     *
+     * @param state the art and the file.
+     * @return the file.
+     * @throws IOException if the file cannot be written.
+     */
+    @Benchmark
+    public File htmlCompactCollapsed(HtmlState state) throws IOException {
+        new CompactHtmlOutput(state.collapsedFile.getPath(), DEFAULT_FONT, true).out(state.asciiArt);
+        return state.collapsedFile;
+    }
+
+    /**
+     * Generates a deterministic image with gradients and noise.
+     *
+     * @param width  the image width.
+     * @param height the image height.
+     * @return the image.
+     */
+    static BufferedImage syntheticImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = x * CHANNEL_MASK / width;
+                int green = y * CHANNEL_MASK / height;
+                int blue = random.nextInt(CHANNEL_MASK + 1);
+                image.setRGB(x, y, (red << RED_SHIFT) | (green << GREEN_SHIFT) | blue);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Encodes an image into a file, in the format named by the file's extension.
+     *
+     * @param image the image.
+     * @param file  the file.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeImage(BufferedImage image, File file) throws IOException {
+        String name = file.getName();
+        ImageIO.write(image, name.substring(name.lastIndexOf('.') + 1), file);
+    }
+}
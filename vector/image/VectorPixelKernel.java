@@ -0,0 +1,68 @@
+package image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static ascii_art.Constants.*;
+
+/**
+ * The pixel loops on the Vector API, unpacking and weighing as many pixels per
+ * instruction as the CPU's preferred vector holds. The remainder of a run that does
+ * not fill a vector is handled one pixel at a time, and so are profiles that are not a
+ * weighted sum, whose per-channel tables would need a gather per lane.
+ * <p>
+ * Lanes are integers: a pixel's luminance is below 2^22 and a lane of channel sums
+ * takes a run of up to 2^23 pixels, so nothing overflows and the results are exact.
+ * Requires the {@code jdk.incubator.vector} module; see {@link Image#setVectorKernel(boolean)}.
+ */
+final class VectorPixelKernel implements PixelKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private final PixelKernel tail = new ScalarPixelKernel();
+
+    @Override
+    public void luminance(int[] pixels, int offset, int length, int[] dest, LuminanceProfile profile) {
+        if (!profile.isWeightedSum()) {
+            tail.luminance(pixels, offset, length, dest, profile);
+            return;
+        }
+        int redWeight = profile.getRedWeight();
+        int greenWeight = profile.getGreenWeight();
+        int blueWeight = profile.getBlueWeight();
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector rgb = IntVector.fromArray(SPECIES, pixels, offset + i);
+            rgb.lanewise(VectorOperators.LSHR, RED_SHIFT).and(CHANNEL_MASK).mul(redWeight)
+                    .add(rgb.lanewise(VectorOperators.LSHR, GREEN_SHIFT).and(CHANNEL_MASK).mul(greenWeight))
+                    .add(rgb.and(CHANNEL_MASK).mul(blueWeight))
+                    .intoArray(dest, i);
+        }
+        for (; i < length; i++) {
+            dest[i] = profile.luminance(pixels[offset + i]);
+        }
+    }
+
+    @Override
+    public void addChannels(int[] pixels, int offset, int length, long[] sums) {
+        int bound = SPECIES.loopBound(length);
+        IntVector red = IntVector.zero(SPECIES);
+        IntVector green = IntVector.zero(SPECIES);
+        IntVector blue = IntVector.zero(SPECIES);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            IntVector rgb = IntVector.fromArray(SPECIES, pixels, offset + i);
+            red = red.add(rgb.lanewise(VectorOperators.LSHR, RED_SHIFT).and(CHANNEL_MASK));
+            green = green.add(rgb.lanewise(VectorOperators.LSHR, GREEN_SHIFT).and(CHANNEL_MASK));
+            blue = blue.add(rgb.and(CHANNEL_MASK));
+        }
+        sums[FIRST] += red.reduceLanesToLong(VectorOperators.ADD);
+        sums[SECOND] += green.reduceLanesToLong(VectorOperators.ADD);
+        sums[THIRD] += blue.reduceLanesToLong(VectorOperators.ADD);
+        if (i < length) {
+            tail.addChannels(pixels, offset + i, length - i, sums);
+        }
+    }
+}